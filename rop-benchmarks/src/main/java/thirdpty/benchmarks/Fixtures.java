@@ -0,0 +1,360 @@
+package thirdpty.benchmarks;
+
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command classes for the benchmarks, modeled on the ones used by the tests.
+ */
+public final class Fixtures {
+	private Fixtures() {}
+
+	/**
+	 * The number of {@code run} invocations, to keep them from being optimized away.
+	 */
+	static long runs;
+
+	/**
+	 * @return all the sub-commands, to be registered after a top command
+	 */
+	static List<Class<?>> subCommands() {
+		List<Class<?>> list = new ArrayList<>();
+		for (Class<?> klass : Fixtures.class.getDeclaredClasses()) {
+			if (klass.getSimpleName().startsWith("Sub")) {
+				list.add(klass);
+			}
+		}
+		return list;
+	}
+
+	@Command(name = "add", descriptions = "The command to demo all the supported primitive data types", notes = {
+		"SIZE is an integer and optional unit (example: 10M is 10*1024*1024).",
+		"\nExit status:",
+		" 0 - if OK,",
+		" 1 - if minor problems (e.g., cannot access subdirectory),",
+		" 2 - if serious trouble (e.g., cannot access command-line argument)."
+	})
+	public static class Primitives {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "[-128, 127]", opt = { "-B", "--byte" })
+		byte bt;
+
+		@Option(description = "[\\u0000, \\u65535]", opt = { "-c", "--char" })
+		char c;
+
+		@Option(description = "+[4.9e-324, 1.7976931348623157e+308]", opt = { "-d", "--double" })
+		double d;
+
+		@Option(description = "+[1.4e-45f, 3.4028235e+38f]", opt = { "-F", "--float" })
+		float f;
+
+		@Option(description = "[0x80000000, 0x7fffffff]", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "[0x8000000000000000L, 0x7fffffffffffffffL]", opt = { "-l", "--long" })
+		long l;
+
+		@Option(description = "[-32768, 32767]", opt = { "-S", "--short" })
+		short s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "load", descriptions = "The command to demo all the supported wrapper types")
+	public static class Wrappers {
+		@Option(description = "", opt = { "-b", "--boolean" })
+		Boolean b;
+
+		@Option(description = "", opt = { "-B", "--byte" })
+		Byte bt;
+
+		@Option(description = "", opt = { "-c", "--char" })
+		Character c;
+
+		@Option(description = "", opt = { "-i", "--int" })
+		Integer i;
+
+		@Option(description = "", opt = { "-l", "--long" })
+		Long l;
+
+		@Option(description = "", opt = { "-F", "--float" })
+		Float f;
+
+		@Option(description = "", opt = { "-d", "--double" })
+		Double d;
+
+		@Option(description = "", opt = { "-S", "--short" })
+		Short s;
+
+		@Option(description = "", opt = { "-s", "--string" })
+		String str;
+
+		@Option(description = "", opt = { "-f", "--file" })
+		File file;
+
+		@Option(description = "", opt = { "-p", "--path" })
+		Path path;
+
+		void run(String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "paths", descriptions = "A command taking its parameters as a List, without copying")
+	public static class Paths {
+		@Option(description = "an int option", opt = { "-i", "--int" })
+		int i;
+
+		void run(List<String> params) {
+			runs += params.size();
+		}
+	}
+
+	@Command(name = "ports", descriptions = "A command with multi-valued options, repeated or split, and key=value properties")
+	public static class Ports {
+		@Option(description = "a port, repeatable", opt = { "-p", "--port" })
+		int[] ports;
+
+		@Option(description = "the ids, comma separated", opt = { "--ids" }, split = ",")
+		long[] ids;
+
+		@Option(description = "a property, as key=value", opt = { "-D" })
+		Map<String, String> props;
+	}
+
+	@Command(name = "server", descriptions = "A command with its options read from the environment or a config file")
+	public static class Server {
+		@Option(description = "the host", opt = { "--host" }, env = "ROP_BENCHMARK_HOST", config = "server.host")
+		String host;
+
+		@Option(description = "the port", opt = { "--port" }, config = "server.port", required = true)
+		int port;
+
+		@Option(description = "the allowed clients", opt = { "--allow" }, config = "server.allow")
+		List<String> allow;
+	}
+
+	@Command(name = "flags", descriptions = "A command with a flag for each letter, to be clustered like -abc")
+	public static class Flags {
+		@Option(description = "flag a", opt = { "-a" })
+		boolean a;
+
+		@Option(description = "flag b", opt = { "-b" })
+		boolean b;
+
+		@Option(description = "flag c", opt = { "-c" })
+		boolean c;
+
+		@Option(description = "flag d", opt = { "-d" })
+		boolean d;
+
+		@Option(description = "flag e", opt = { "-e" })
+		boolean e;
+
+		@Option(description = "flag f", opt = { "-f" })
+		boolean f;
+
+		@Option(description = "flag g", opt = { "-g" })
+		boolean g;
+
+		@Option(description = "flag h", opt = { "-h" })
+		boolean h;
+
+		@Option(description = "flag i", opt = { "-i" })
+		boolean i;
+
+		@Option(description = "flag j", opt = { "-j" })
+		boolean j;
+
+		@Option(description = "flag k", opt = { "-k" })
+		boolean k;
+
+		@Option(description = "flag l", opt = { "-l" })
+		boolean l;
+
+		@Option(description = "flag m", opt = { "-m" })
+		boolean m;
+
+		@Option(description = "flag n", opt = { "-n" })
+		boolean n;
+
+		@Option(description = "flag o", opt = { "-o" })
+		boolean o;
+
+		@Option(description = "flag p", opt = { "-p" })
+		boolean p;
+
+		@Option(description = "flag q", opt = { "-q" })
+		boolean q;
+
+		@Option(description = "flag r", opt = { "-r" })
+		boolean r;
+
+		@Option(description = "flag s", opt = { "-s" })
+		boolean s;
+
+		@Option(description = "flag t", opt = { "-t" })
+		boolean t;
+
+		@Option(description = "flag u", opt = { "-u" })
+		boolean u;
+
+		@Option(description = "flag v", opt = { "-v" })
+		boolean v;
+
+		@Option(description = "flag w", opt = { "-w" })
+		boolean w;
+
+		@Option(description = "flag x", opt = { "-x" })
+		boolean x;
+
+		@Option(description = "flag y", opt = { "-y" })
+		boolean y;
+
+		@Option(description = "flag z", opt = { "-z" })
+		boolean z;
+
+		void run() {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub00", descriptions = "Sub-command 00, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub00 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub01", descriptions = "Sub-command 01, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub01 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub02", descriptions = "Sub-command 02, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub02 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub03", descriptions = "Sub-command 03, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub03 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub04", descriptions = "Sub-command 04, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub04 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub05", descriptions = "Sub-command 05, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub05 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub06", descriptions = "Sub-command 06, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub06 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+
+	@Command(name = "sub07", descriptions = "Sub-command 07, one of the many sub-commands of the top command", notes = "\nSee also the other sub-commands.")
+	public static class Sub07 {
+		@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+		boolean b;
+
+		@Option(description = "an int option with a description long enough to be wrapped in the help information", opt = { "-i", "--int" })
+		int i;
+
+		@Option(description = "a string option", opt = { "-s", "--string" })
+		String s;
+
+		void run(OptionParser parser, String[] params) {
+			runs++;
+		}
+	}
+}
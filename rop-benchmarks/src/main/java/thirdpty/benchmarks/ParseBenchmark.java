@@ -0,0 +1,165 @@
+package thirdpty.benchmarks;
+
+import com.github.ryenus.rop.BatchResult;
+import com.github.ryenus.rop.OptionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of small and very large argument vectors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+	private static final String[] SMALL = "-b -B 1 -c a load -d 0.1 -F 0.2 -i -010 -l 0xf -S -32768 sub07 -bi 3 a b c".split("\\s+");
+	private static final String[] LONG = "--boolean --byte 1 --char a --double 0.1 --float 0.2 --int=010 --long 0xf --short -32768 -- -x".split("\\s+");
+	private static final String[] ABBREVIATED = "--bool --by 1 --ch a --do 0.1 --fl 0.2 --in=010 --lo 0xf --sh -32768 -- -x".split("\\s+");
+
+	@Param({ "100000" })
+	private int size;
+
+	private OptionParser parser;
+	private OptionParser flags;
+	private OptionParser paths;
+	private OptionParser ports;
+	private OptionParser server;
+	private String[] params;
+	private String[] options;
+	private String[] clusters;
+	private String[] repeated;
+	private String[] ids;
+	private String[] props;
+	private List<String[]> lines;
+
+	@Setup
+	public void setup() throws IOException {
+		parser = new OptionParser(Fixtures.Primitives.class, Fixtures.Wrappers.class, Fixtures.subCommands());
+		flags = new OptionParser(Fixtures.Flags.class);
+		paths = new OptionParser(Fixtures.Paths.class);
+		ports = new OptionParser(Fixtures.Ports.class);
+
+		params = new String[size];
+		for (int i = 0; i < size; i++) {
+			params[i] = "/some/path/to/file-" + i;
+		}
+
+		options = new String[size];
+		for (int i = 0; i < size; i += 2) {
+			options[i] = "-i";
+			options[i + 1] = Integer.toString(i);
+		}
+
+		clusters = new String[size];
+		for (int i = 0; i < size; i++) {
+			clusters[i] = i % 2 == 0 ? "-abcdefghijklm" : "+nopqrstuvwxyz";
+		}
+
+		repeated = new String[size];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i += 2) {
+			repeated[i] = "-p";
+			repeated[i + 1] = Integer.toString(i);
+			sb.append(i).append(',');
+		}
+		ids = new String[] { "--ids", sb.substring(0, sb.length() - 1) };
+
+		props = new String[size];
+		for (int i = 0; i < size; i++) {
+			props[i] = "-Dsome.property." + i + "=value-" + i;
+		}
+
+		Path config = Files.createTempFile("rop-benchmark", ".toml");
+		config.toFile().deleteOnExit();
+		Files.write(config, Arrays.asList("[server]", "host = \"localhost\"", "port = 8080", "allow = [ \"10.0.0.1\", \"10.0.0.2\" ]"));
+		server = new OptionParser(Fixtures.Server.class).config(config);
+
+		lines = Collections.nCopies(size / 10, SMALL);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> small() {
+		return parser.parse(SMALL, true);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> longOptions() {
+		return parser.parse(LONG);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> abbreviatedOptions() {
+		return parser.parse(ABBREVIATED);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> manyParams() {
+		return parser.parse(params);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> manyParamsAsList() {
+		return paths.parse(params);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> manyOptions() {
+		return parser.parse(options);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> manyClusters() {
+		return flags.parse(clusters);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> repeatedIntOption() {
+		return ports.parse(repeated);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> splitLongOption() {
+		return ports.parse(ids);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> manyProperties() {
+		return ports.parse(props);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> fromConfig() {
+		return server.parse(new String[] { "a" });
+	}
+
+	@Benchmark
+	public BatchResult batchSmall() {
+		return parser.parseAll(lines, true);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> sessionSmall() {
+		return parser.newSession().parse(SMALL, true);
+	}
+}
@@ -0,0 +1,56 @@
+package thirdpty.benchmarks;
+
+import com.github.ryenus.rop.OptionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of {@link OptionParser} and registration of commands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+	private List<Class<?>> subCommands;
+	private OptionParser parser;
+
+	@Setup
+	public void setup() {
+		subCommands = Fixtures.subCommands();
+		parser = new OptionParser(Fixtures.Primitives.class, Fixtures.Wrappers.class, subCommands);
+	}
+
+	@Benchmark
+	public OptionParser registerOne() {
+		return new OptionParser(Fixtures.Primitives.class);
+	}
+
+	@Benchmark
+	public OptionParser registerMany() {
+		return new OptionParser(Fixtures.Primitives.class, Fixtures.Wrappers.class, subCommands);
+	}
+
+	@Benchmark
+	public OptionParser registerInstance() {
+		return new OptionParser().register(new Fixtures.Primitives());
+	}
+
+	@Benchmark
+	public OptionParser newSession() {
+		return parser.newSession();
+	}
+}
@@ -0,0 +1,55 @@
+package thirdpty.benchmarks;
+
+import com.github.ryenus.rop.OptionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch to the {@code run} methods of the parsed commands, with as little
+ * parsing as possible, covering the different {@code run} signatures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunBenchmark {
+	private static final String[] NONE = {};
+	private static final String[] MULTI = "load sub00 sub01 sub02 sub03 sub04 sub05 sub06 sub07".split("\\s+");
+
+	private OptionParser parser;
+	private OptionParser flags;
+
+	@Setup
+	public void setup() {
+		parser = new OptionParser(Fixtures.Primitives.class, Fixtures.Wrappers.class, Fixtures.subCommands());
+		flags = new OptionParser(Fixtures.Flags.class);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> runWithParserAndParams() {
+		return parser.parse(NONE);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> runWithoutArgs() {
+		return flags.parse(NONE);
+	}
+
+	@Benchmark
+	public Map<Object, String[]> runMulti() {
+		return parser.parse(MULTI, true);
+	}
+}
@@ -0,0 +1,681 @@
+package com.github.ryenus.rop.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.github.ryenus.rop.CommandBinder;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+
+/**
+ * Generate a {@link CommandBinder} for each {@link Command} class, so that
+ * {@link com.github.ryenus.rop.OptionParser} can register the command and set
+ * its options without reflection.
+ *
+ * <p>
+ * The option table is validated at build time with the rules applied when
+ * the command is registered at runtime: the option keys, required and hidden,
+ * counting, arity and split, and the Map keys. Whether the value type is
+ * supported is left to the registration, as a converter can be added to the
+ * parser. A binder is generated only if the command class, its option fields
+ * and their types are accessible from the same package, i.e. not private,
+ * and the option fields are not final. Other classes are left to reflection.
+ * </p>
+ *
+ * <p>
+ * All the Command classes are also listed in the command index
+ * {@value #INDEX}, with their names and descriptions, which is read by
+ * {@link com.github.ryenus.rop.OptionParser#fromIndex(Object)}. For
+ * incremental builds, the entries of an existing index are kept unless the
+ * command is compiled again. The visible options of each command are listed
+ * likewise in the option index {@value #OPTIONS}, for the shell completion.
+ * </p>
+ *
+ * <p>
+ * For GraalVM native-image, the reachability metadata of the Command classes,
+ * i.e. the no-arg constructors, {@code run} methods, and for the ones left to
+ * reflection, the option fields, is written to {@value #NATIVE}, along with
+ * the command index as a resource, so no hand-written configuration is needed.
+ * </p>
+ *
+ * @author ryenus
+ */
+@SupportedAnnotationTypes("com.github.ryenus.rop.OptionParser.Command")
+public class CommandProcessor extends AbstractProcessor {
+	private static final String BINDER = CommandBinder.class.getCanonicalName();
+	private static final String SUFFIX = "_RopBinder";
+	private static final String INDEX = "META-INF/rop/commands";
+	private static final String OPTIONS = "META-INF/rop/options";
+	private static final String NATIVE = "META-INF/native-image/com.github.ryenus/rop-commands/";
+
+	private final Map<String, String> index = new TreeMap<>(); // escaped command name -> index line
+	private final Map<String, String> options = new TreeMap<>(); // escaped command name -> option index line
+	private final Map<String, String> reflect = new TreeMap<>(); // binary class name -> reflect-config entry
+
+	private Elements elements;
+	private Types types;
+	private Messager messager;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+		messager = processingEnv.getMessager();
+
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(Command.class))) {
+			List<VariableElement> fields = optionFields(type);
+			boolean bound = validate(fields) && bindable(type, fields);
+			if (bound) {
+				write(type, fields);
+			}
+			addIndex(type, fields);
+			addReflect(type, bound);
+		}
+
+		if (roundEnv.processingOver() && !index.isEmpty()) {
+			writeLines(INDEX, index, "# name\tclass\tdescriptions...\n", "", "", CommandProcessor::indexKey);
+			writeLines(OPTIONS, options, "# name\tkeys|kind|arity|description...\n", "", "", CommandProcessor::indexKey);
+			writeLines(NATIVE + "reflect-config.json", reflect, "[\n", ",", "]\n", CommandProcessor::reflectKey);
+			writeLines(NATIVE + "resource-config.json", new TreeMap<>(), "{\"resources\":{\"includes\":[{\"pattern\":\"\\\\Q" + INDEX + "\\\\E\"},"
+					+ "{\"pattern\":\"\\\\Q" + OPTIONS + "\\\\E\"}]}}\n", "", "", line -> null);
+		}
+
+		return false;
+	}
+
+	private void addIndex(TypeElement type, List<VariableElement> fields) {
+		Command cmdAnno = type.getAnnotation(Command.class);
+		String name = escape(cmdAnno.name());
+		StringBuilder sb = new StringBuilder(name);
+		sb.append('\t').append(elements.getBinaryName(type));
+		for (String description : cmdAnno.descriptions()) {
+			sb.append('\t').append(escape(description));
+		}
+
+		String existing = index.putIfAbsent(name, sb.toString());
+		if (existing != null) {
+			messager.printMessage(Kind.WARNING, String.format("Command '%s' is already indexed as %s", cmdAnno.name(), existing.split("\t")[1]), type);
+			return;
+		}
+
+		StringBuilder opts = new StringBuilder(name);
+		for (VariableElement field : fields) {
+			Option optAnno = field.getAnnotation(Option.class);
+			if (!optAnno.hidden() && optAnno.opt().length > 0) {
+				opts.append('\t').append(String.join(" ", optAnno.opt())).append('|').append(kind(field.asType(), optAnno))
+					.append('|').append(optAnno.arity()).append('|').append(escape(optAnno.description()));
+			}
+		}
+		options.put(name, opts.toString());
+	}
+
+	/**
+	 * @return the kind of the option argument in the option index: empty if
+	 *         taking no argument, {@literal "file"}, {@literal "=A,B"} for the
+	 *         enum constants, or {@literal "arg"}
+	 */
+	private String kind(TypeMirror type, Option optAnno) {
+		String erased = types.erasure(type).toString();
+		if (optAnno.secret() || optAnno.count() || erased.equals("boolean") || erased.equals("java.lang.Boolean")) {
+			return "";
+		}
+
+		TypeMirror valueType = type;
+		if (type.getKind() == TypeKind.ARRAY) {
+			valueType = ((ArrayType) type).getComponentType();
+		} else if (type.getKind() == TypeKind.DECLARED && isA(type, "java.util.Collection") && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+			valueType = ((DeclaredType) type).getTypeArguments().get(0);
+		}
+
+		String valueName = types.erasure(valueType).toString();
+		if (valueName.equals("java.io.File") || valueName.equals("java.nio.file.Path")) {
+			return "file";
+		}
+
+		Element element = types.asElement(valueType);
+		if (element != null && element.getKind() == ElementKind.ENUM) {
+			StringBuilder sb = new StringBuilder("=");
+			for (Element constant : element.getEnclosedElements()) {
+				if (constant.getKind() == ElementKind.ENUM_CONSTANT) {
+					sb.append(sb.length() > 1 ? "," : "").append(constant.getSimpleName());
+				}
+			}
+			return sb.toString();
+		}
+		return "arg";
+	}
+
+	private static String escape(String field) {
+		return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+	}
+
+	private static String indexKey(String line) {
+		return line.isEmpty() || line.charAt(0) == '#' ? null : line.substring(0, Math.max(line.indexOf('\t'), 0));
+	}
+
+	/**
+	 * Register what's accessed reflectively by the parser: the no-arg
+	 * constructor, the {@code run} methods, the binder, or the option fields if
+	 * there's no binder.
+	 */
+	private void addReflect(TypeElement type, boolean bound) {
+		String binaryName = elements.getBinaryName(type).toString();
+		StringBuilder sb = new StringBuilder("{\"name\":\"").append(binaryName).append("\",\"queryAllDeclaredMethods\":true");
+		if (!bound) {
+			sb.append(",\"allDeclaredFields\":true");
+		}
+		sb.append(",\"methods\":[");
+		String comma = "";
+		for (ExecutableElement constr : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constr.getParameters().isEmpty()) {
+				sb.append("{\"name\":\"<init>\",\"parameterTypes\":[]}");
+				comma = ",";
+			}
+		}
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			if (method.getSimpleName().contentEquals("run")) {
+				sb.append(comma).append("{\"name\":\"run\",\"parameterTypes\":[");
+				comma = ",";
+				String sep = "";
+				for (VariableElement param : method.getParameters()) {
+					sb.append(sep).append('"').append(binaryName(param.asType())).append('"');
+					sep = ",";
+				}
+				sb.append("]}");
+			}
+		}
+		reflect.put(binaryName, sb.append("]}").toString());
+
+		if (bound) {
+			reflect.put(binaryName + SUFFIX, "{\"name\":\"" + binaryName + SUFFIX + "\",\"methods\":[{\"name\":\"<init>\",\"parameterTypes\":[]}]}");
+		}
+	}
+
+	private String binaryName(TypeMirror type) {
+		if (type.getKind() == TypeKind.ARRAY) {
+			return binaryName(((ArrayType) type).getComponentType()) + "[]";
+		} else if (type.getKind() == TypeKind.DECLARED) {
+			return elements.getBinaryName((TypeElement) types.asElement(type)).toString();
+		}
+		return types.erasure(type).toString();
+	}
+
+	private static String reflectKey(String line) {
+		String prefix = "{\"name\":\"";
+		return line.startsWith(prefix) ? line.substring(prefix.length(), line.indexOf('"', prefix.length())) : null;
+	}
+
+	/**
+	 * Write the resource with one entry per line, merged with the entries of
+	 * the existing resource, if any, from a previous incremental build.
+	 *
+	 * @param keyOf the key of an entry line, or null if it's not an entry
+	 */
+	private void writeLines(String resource, Map<String, String> entries, String header, String separator, String footer, Function<String, String> keyOf) {
+		Map<String, String> lines = new TreeMap<>();
+		try {
+			FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resource);
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!separator.isEmpty() && line.endsWith(separator)) {
+						line = line.substring(0, line.length() - separator.length());
+					}
+
+					String key = keyOf.apply(line);
+					if (key != null) {
+						lines.put(key, line);
+					}
+				}
+			}
+		} catch (IOException e) { // not created yet
+		}
+		lines.putAll(entries);
+
+		try (Writer writer = new OutputStreamWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resource).openOutputStream(), StandardCharsets.UTF_8)) {
+			writer.write(header);
+			String sep = "";
+			for (String line : lines.values()) {
+				writer.write(sep);
+				writer.write(line);
+				sep = separator + "\n";
+			}
+			if (!lines.isEmpty()) {
+				writer.write('\n');
+			}
+			writer.write(footer);
+		} catch (IOException e) {
+			messager.printMessage(Kind.ERROR, String.format("Unable to write %s: %s", resource, e));
+		}
+	}
+
+	private static List<VariableElement> optionFields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (field.getAnnotation(Option.class) != null) {
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	private boolean validate(List<VariableElement> fields) {
+		boolean valid = true;
+		Map<String, VariableElement> keys = new HashMap<>();
+		for (VariableElement field : fields) {
+			Option optAnno = field.getAnnotation(Option.class);
+			String[] opts = optAnno.opt();
+			if (opts.length == 0) {
+				messager.printMessage(Kind.ERROR, "@Option.opt is empty", field);
+				valid = false;
+				continue;
+			}
+
+			if (optAnno.required() && optAnno.hidden()) {
+				messager.printMessage(Kind.ERROR, String.format("Required option '%s' cannot be hidden", opts[0]), field);
+				valid = false;
+			}
+
+			TypeMirror type = field.asType();
+			String erased = types.erasure(type).toString();
+			if (optAnno.count() && !erased.equals("int") && !erased.equals("java.lang.Integer")) {
+				messager.printMessage(Kind.ERROR, String.format("Counting option '%s' must be an int", opts[0]), field);
+				valid = false;
+			}
+			if (optAnno.arity() < 1) {
+				messager.printMessage(Kind.ERROR, String.format("Arity of option '%s' must be positive", opts[0]), field);
+				valid = false;
+			}
+			boolean multi = type.getKind() == TypeKind.ARRAY || isCollection(type) || isMap(type);
+			if (!multi && (optAnno.arity() != 1 || !optAnno.split().isEmpty())) {
+				messager.printMessage(Kind.ERROR, String.format("Option '%s' must be an array, List, Set or Map for arity or split", opts[0]), field);
+				valid = false;
+			}
+
+			if (type.getKind() == TypeKind.DECLARED && isA(type, "java.util.Map") && !((DeclaredType) type).getTypeArguments().isEmpty()
+				&& !types.isAssignable(elements.getTypeElement("java.lang.String").asType(), ((DeclaredType) type).getTypeArguments().get(0))) {
+				messager.printMessage(Kind.ERROR, String.format("Map option '%s' must have String keys", opts[0]), field);
+				valid = false;
+			}
+
+			for (String opt : opts) {
+				String key = opt.replaceFirst("^(-)+", "");
+				VariableElement existing = keys.put(key, field);
+				if (existing != null) {
+					messager.printMessage(Kind.ERROR, String.format("Conflict option '%s' found in '%s' and '%s'", opt, existing, field), field);
+					valid = false;
+				}
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * @return whether the field is a List or Set, or the like, which can be
+	 *         assigned an ArrayList or a LinkedHashSet, as with the parser
+	 */
+	private boolean isCollection(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED && isA(type, "java.util.Collection")
+			&& (assignable("java.util.ArrayList", type) || assignable("java.util.LinkedHashSet", type));
+	}
+
+	/**
+	 * @return whether the field is a Map, or the like, which can be assigned a
+	 *         LinkedHashMap, as with the parser
+	 */
+	private boolean isMap(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED && isA(type, "java.util.Map") && assignable("java.util.LinkedHashMap", type);
+	}
+
+	private boolean bindable(TypeElement type, List<VariableElement> fields) {
+		for (Element e = type; e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+			TypeElement t = (TypeElement) e;
+			if (t.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+
+			if (t.getNestingKind() == NestingKind.TOP_LEVEL) {
+				break;
+			}
+
+			if (t.getNestingKind() != NestingKind.MEMBER || !t.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+		}
+
+		for (VariableElement field : fields) {
+			Set<Modifier> modifiers = field.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+				return false;
+			}
+
+			if (!accessible(field.asType(), elements.getPackageOf(type))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return whether the type, and each of its type arguments, can be named
+	 *         by the binder in the given package
+	 */
+	private boolean accessible(TypeMirror type, PackageElement pkg) {
+		switch (type.getKind()) {
+		case ARRAY:
+			return accessible(((ArrayType) type).getComponentType(), pkg);
+		case TYPEVAR:
+			return accessible(types.erasure(type), pkg);
+		case WILDCARD:
+			WildcardType wildcard = (WildcardType) type;
+			return (wildcard.getExtendsBound() == null || accessible(wildcard.getExtendsBound(), pkg))
+				&& (wildcard.getSuperBound() == null || accessible(wildcard.getSuperBound(), pkg));
+		case DECLARED:
+			for (Element e = types.asElement(type); e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+				Set<Modifier> modifiers = e.getModifiers();
+				if (modifiers.contains(Modifier.PRIVATE) || !modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(e).equals(pkg)) {
+					return false;
+				}
+			}
+			for (TypeMirror arg : ((DeclaredType) type).getTypeArguments()) {
+				if (!accessible(arg, pkg)) {
+					return false;
+				}
+			}
+			return true;
+		default:
+			return true;
+		}
+	}
+
+	private static boolean instantiable(TypeElement type) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+
+		for (ExecutableElement constr : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constr.getParameters().isEmpty() && !constr.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void write(TypeElement type, List<VariableElement> fields) {
+		String pkg = elements.getPackageOf(type).getQualifiedName().toString();
+		String binaryName = elements.getBinaryName(type).toString();
+		String simpleName = (pkg.isEmpty() ? binaryName : binaryName.substring(pkg.length() + 1)) + SUFFIX;
+		String cmdType = types.erasure(type.asType()).toString();
+
+		StringBuilder sb = new StringBuilder();
+		if (!pkg.isEmpty()) {
+			sb.append("package ").append(pkg).append(";\n\n");
+		}
+
+		if (elements.getTypeElement("javax.annotation.processing.Generated") != null) {
+			sb.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+		}
+
+		sb.append("public final class ").append(simpleName).append(" extends ").append(BINDER).append(" {\n");
+
+		sb.append("\tprivate static final String[] NAMES = {");
+		for (VariableElement field : fields) {
+			sb.append(" \"").append(field.getSimpleName()).append("\",");
+		}
+		sb.append(" };\n\n");
+
+		sb.append("\tprivate static final Class<?>[] TYPES = {");
+		for (VariableElement field : fields) {
+			sb.append(" ").append(types.erasure(field.asType())).append(".class,");
+		}
+		sb.append(" };\n\n");
+
+		List<String> elementTypes = new ArrayList<>();
+		boolean generic = false;
+		for (VariableElement field : fields) {
+			String elementType = elementType(field.asType());
+			elementTypes.add(elementType);
+			generic |= elementType != null;
+		}
+		if (generic) {
+			sb.append("\tprivate static final Class<?>[] ELEMENT_TYPES = {");
+			for (String elementType : elementTypes) {
+				sb.append(" ").append(elementType == null ? "null" : elementType + ".class").append(",");
+			}
+			sb.append(" };\n\n");
+		}
+
+		sb.append("\t@Override\n");
+		sb.append("\tprotected ").append(Command.class.getCanonicalName()).append(" command() {\n");
+		sb.append("\t\treturn ").append(literal(mirror(type, Command.class))).append(";\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n");
+		sb.append("\tprotected ").append(Option.class.getCanonicalName()).append("[] options() {\n");
+		sb.append("\t\treturn new ").append(Option.class.getCanonicalName()).append("[] {");
+		for (VariableElement field : fields) {
+			sb.append("\n\t\t\t").append(literal(mirror(field, Option.class))).append(",");
+		}
+		sb.append("\n\t\t};\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n");
+		sb.append("\tprotected String[] names() {\n");
+		sb.append("\t\treturn NAMES;\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n");
+		sb.append("\tprotected Class<?>[] types() {\n");
+		sb.append("\t\treturn TYPES;\n");
+		sb.append("\t}\n\n");
+
+		if (generic) {
+			sb.append("\t@Override\n");
+			sb.append("\tprotected Class<?>[] elementTypes() {\n");
+			sb.append("\t\treturn ELEMENT_TYPES;\n");
+			sb.append("\t}\n\n");
+		}
+
+		sb.append("\t@Override\n");
+		sb.append("\tprotected Object newInstance() {\n");
+		sb.append("\t\treturn ").append(instantiable(type) ? "new " + cmdType + "()" : "null").append(";\n");
+		sb.append("\t}\n");
+
+		writeGetter(sb, cmdType, fields);
+		writeSetter(sb, cmdType, "set", "Object", fields, null);
+		writeSetter(sb, cmdType, "setInt", "int", fields, TypeKind.INT);
+		writeSetter(sb, cmdType, "setLong", "long", fields, TypeKind.LONG);
+		writeSetter(sb, cmdType, "setDouble", "double", fields, TypeKind.DOUBLE);
+		writeSetter(sb, cmdType, "setBoolean", "boolean", fields, TypeKind.BOOLEAN);
+		sb.append("}\n");
+
+		String qualifiedName = pkg.isEmpty() ? simpleName : pkg + "." + simpleName;
+		try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+			writer.write(sb.toString());
+		} catch (IOException e) {
+			messager.printMessage(Kind.ERROR, String.format("Unable to write %s: %s", qualifiedName, e), type);
+		}
+	}
+
+	private static void writeGetter(StringBuilder sb, String cmdType, List<VariableElement> fields) {
+		sb.append("\n\t@Override\n");
+		sb.append("\tprotected Object get(Object command, int index) {\n");
+		sb.append("\t\t").append(cmdType).append(" c = (").append(cmdType).append(") command;\n");
+		sb.append("\t\tswitch (index) {\n");
+		for (int i = 0; i < fields.size(); i++) {
+			sb.append("\t\tcase ").append(i).append(":\n");
+			sb.append("\t\t\treturn c.").append(fields.get(i).getSimpleName()).append(";\n");
+		}
+		sb.append("\t\tdefault:\n");
+		sb.append("\t\t\tthrow new IndexOutOfBoundsException(String.valueOf(index));\n");
+		sb.append("\t\t}\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * Write the setter for the fields of the given primitive kind, or for all
+	 * the fields if kind is null. Nothing is written if there's no such field.
+	 */
+	private void writeSetter(StringBuilder sb, String cmdType, String method, String valueType, List<VariableElement> fields, TypeKind kind) {
+		StringBuilder cases = new StringBuilder();
+		for (int i = 0; i < fields.size(); i++) {
+			VariableElement field = fields.get(i);
+			if (kind == null) {
+				cases.append("\t\tcase ").append(i).append(":\n");
+				cases.append("\t\t\tc.").append(field.getSimpleName()).append(" = (").append(boxed(field.asType())).append(") value;\n");
+				cases.append("\t\t\tbreak;\n");
+			} else if (field.asType().getKind() == kind) {
+				cases.append("\t\tcase ").append(i).append(":\n");
+				cases.append("\t\t\tc.").append(field.getSimpleName()).append(" = value;\n");
+				cases.append("\t\t\tbreak;\n");
+			}
+		}
+
+		if (kind != null && cases.length() == 0) {
+			return;
+		}
+
+		sb.append("\n\t@Override\n");
+		if (kind == null) {
+			sb.append("\t@SuppressWarnings(\"unchecked\")\n");
+		}
+		sb.append("\tprotected void ").append(method).append("(Object command, int index, ").append(valueType).append(" value) {\n");
+		sb.append("\t\t").append(cmdType).append(" c = (").append(cmdType).append(") command;\n");
+		sb.append("\t\tswitch (index) {\n");
+		sb.append(cases);
+		sb.append("\t\tdefault:\n");
+		if (kind == null) {
+			sb.append("\t\t\tthrow new IndexOutOfBoundsException(String.valueOf(index));\n");
+		} else {
+			sb.append("\t\t\tsuper.").append(method).append("(command, index, value);\n");
+		}
+		sb.append("\t\t}\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * @return the erased type argument of a generic Collection field, like
+	 *         {@code List<Integer>}, or the value type of a generic Map field,
+	 *         or null for the other fields
+	 */
+	private String elementType(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED || ((DeclaredType) type).getTypeArguments().isEmpty()) {
+			return null;
+		}
+
+		if (!isA(type, "java.util.Collection") && !isA(type, "java.util.Map")) {
+			return null;
+		}
+
+		List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+		TypeMirror arg = args.get(args.size() - 1);
+		return arg.getKind() == TypeKind.DECLARED ? types.erasure(arg).toString() : "Object";
+	}
+
+	private boolean isA(TypeMirror type, String className) {
+		return types.isAssignable(types.erasure(type), types.erasure(elements.getTypeElement(className).asType()));
+	}
+
+	/**
+	 * @return whether an instance of the class can be assigned to the type
+	 */
+	private boolean assignable(String className, TypeMirror type) {
+		return types.isAssignable(types.erasure(elements.getTypeElement(className).asType()), types.erasure(type));
+	}
+
+	private String boxed(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return types.boxedClass(types.getPrimitiveType(type.getKind())).getQualifiedName().toString();
+		}
+		return types.erasure(type).toString();
+	}
+
+	private AnnotationMirror mirror(Element element, Class<?> annoType) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annoType.getCanonicalName())) {
+				return mirror;
+			}
+		}
+		throw new IllegalStateException(String.format("@%s not found on %s", annoType.getSimpleName(), element));
+	}
+
+	/**
+	 * Render the annotation as an anonymous class implementing it, with all the
+	 * attributes, including the default ones.
+	 */
+	private String literal(AnnotationMirror mirror) {
+		String annoType = types.erasure(mirror.getAnnotationType()).toString();
+		StringBuilder sb = new StringBuilder("new ").append(annoType).append("() {");
+		sb.append(" public Class<? extends java.lang.annotation.Annotation> annotationType() { return ").append(annoType).append(".class; }");
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+			ExecutableElement method = entry.getKey();
+			sb.append(" public ").append(method.getReturnType()).append(' ').append(method.getSimpleName()).append("() { return ");
+			sb.append(value(method.getReturnType(), entry.getValue())).append("; }");
+		}
+		return sb.append(" }").toString();
+	}
+
+	private String value(TypeMirror type, AnnotationValue value) {
+		Object v = value.getValue();
+		if (v instanceof List) {
+			TypeMirror componentType = ((ArrayType) type).getComponentType();
+			StringBuilder sb = new StringBuilder("new ").append(types.erasure(componentType)).append("[] {");
+			for (Object item : (List<?>) v) {
+				sb.append(' ').append(value(componentType, (AnnotationValue) item)).append(',');
+			}
+			return sb.append(" }").toString();
+		} else if (v instanceof TypeMirror) {
+			return types.erasure((TypeMirror) v) + ".class";
+		} else if (v instanceof VariableElement) { // enum constant
+			VariableElement constant = (VariableElement) v;
+			return types.erasure(constant.asType()) + "." + constant.getSimpleName();
+		} else if (v instanceof AnnotationMirror) {
+			return literal((AnnotationMirror) v);
+		}
+		return elements.getConstantExpression(v);
+	}
+}
@@ -0,0 +1,144 @@
+package thirdpty.processor;
+
+import com.github.ryenus.rop.CommandBinder;
+import com.github.ryenus.rop.OptionParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CommandProcessorTest {
+
+	@Test
+	public void binderGenerated() throws ClassNotFoundException {
+		Class<?> binder = Class.forName(ProcessedCommand.class.getName() + "_RopBinder");
+		assertTrue(CommandBinder.class.isAssignableFrom(binder));
+		assertNotNull(Class.forName(ProcessedCommand.Nested.class.getName() + "_RopBinder"));
+	}
+
+	@Test(expected = ClassNotFoundException.class)
+	public void privateFieldNotBound() throws ClassNotFoundException {
+		Class.forName(ProcessedCommand.PrivateField.class.getName() + "_RopBinder");
+	}
+
+	@Test
+	public void privateTypeNotBound() {
+		try {
+			Class.forName(ProcessedCommand.PrivateType.class.getName() + "_RopBinder");
+			fail();
+		} catch (ClassNotFoundException e) { // left to reflection
+		}
+
+		OptionParser parser = new OptionParser(ProcessedCommand.PrivateType.class);
+		parser.parse("-m ON -M OFF".split("\\s+"));
+		assertTrue(parser.get(ProcessedCommand.PrivateType.class).on());
+	}
+
+	@Test
+	public void parseWithBinder() {
+		OptionParser parser = new OptionParser(ProcessedCommand.class, ProcessedCommand.Nested.class);
+		ProcessedCommand p = parser.get(ProcessedCommand.class);
+		ProcessedCommand.Nested n = parser.get(ProcessedCommand.Nested.class);
+		assertEquals(9, p.i);
+
+		parser.parse("-bc x -i 10 --path /tmp -s str a nested -l 0xf -vv -n 1,2 -n 3 -Dk=0x10".split("\\s+"), true);
+		assertTrue(p.b);
+		assertEquals(10, p.i);
+		assertEquals('x', p.c);
+		assertEquals(Paths.get("/tmp"), p.path);
+		assertEquals("str", p.str);
+		assertArrayEquals(new String[] { "a" }, p.params);
+		assertEquals(15L, n.l);
+		assertEquals(Arrays.asList(1, 2, 3), n.ns);
+		assertEquals(2, n.v);
+		assertEquals(Long.valueOf(16), n.props.get("k"));
+	}
+
+	@Test
+	public void commandsIndexed() {
+		OptionParser parser = OptionParser.fromIndex(ProcessedCommand.Nested.class);
+		parser.parse("-l 1 processed -i 3 a".split("\\s+"));
+		assertEquals(1L, parser.get(ProcessedCommand.Nested.class).l);
+		assertEquals(3, parser.get(ProcessedCommand.class).i);
+		assertArrayEquals(new String[] { "a" }, parser.get(ProcessedCommand.class).params);
+	}
+
+	@Test
+	public void helpFromIndex() {
+		OptionParser parser = OptionParser.fromIndex(ProcessedCommand.Nested.class);
+		PrintStream out = System.out;
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buf, true));
+		try {
+			parser.showHelp();
+		} finally {
+			System.setOut(out);
+		}
+
+		String help = buf.toString();
+		assertTrue(help.contains("[Command 'processed']"));
+		assertTrue(help.contains("A command with a binder generated at build time"));
+		assertTrue(help.contains("\"quoted\""));
+		assertFalse(help.contains("--boolean")); // options shown only with 'processed --help'
+	}
+
+	@Test
+	public void completionFromIndex() {
+		OptionParser parser = OptionParser.fromIndex(ProcessedCommand.Nested.class).completion(true);
+		assertEquals("processed\tA command with a binder generated at build time\n", complete(parser, "pro"));
+		assertEquals("--boolean\ta bool flag\n", complete(parser, "processed", "--b"));
+		assertEquals("HIGH\n", complete(parser, "processed", "-b", "--level", "h"));
+		assertEquals("HIGH\n", complete(parser, "processed", "--lev", "h")); // unique prefix
+		assertFalse(complete(parser, "processed", "--").contains("--path")); // hidden
+
+		PrintStream out = System.out;
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buf, true));
+		try {
+			parser.showHelp();
+		} finally {
+			System.setOut(out);
+		}
+		assertTrue(buf.toString().contains("Use 'processed --help' to show its options")); // still deferred
+	}
+
+	private static String complete(OptionParser parser, String... words) {
+		String[] args = new String[words.length + 1];
+		args[0] = "__complete";
+		System.arraycopy(words, 0, args, 1, words.length);
+
+		PrintStream out = System.out;
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buf, true));
+		try {
+			assertTrue(parser.parse(args).isEmpty());
+		} finally {
+			System.setOut(out);
+		}
+		return buf.toString();
+	}
+
+	@Test
+	public void nativeImageMetadata() throws IOException {
+		String config;
+		try (InputStream in = getClass().getResourceAsStream("/META-INF/native-image/com.github.ryenus/rop-commands/reflect-config.json")) {
+			assertNotNull(in);
+			config = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+		assertTrue(config.contains("{\"name\":\"thirdpty.processor.ProcessedCommand_RopBinder\""));
+		assertTrue(config.contains("{\"name\":\"run\",\"parameterTypes\":[\"com.github.ryenus.rop.OptionParser\",\"java.lang.String[]\"]}"));
+		assertTrue(config.contains("{\"name\":\"thirdpty.processor.ProcessedCommand$PrivateField\",\"queryAllDeclaredMethods\":true,\"allDeclaredFields\":true"));
+		try (InputStream in = getClass().getResourceAsStream("/META-INF/native-image/com.github.ryenus/rop-commands/resource-config.json")) {
+			assertNotNull(in);
+			assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("META-INF/rop/options"));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package thirdpty.processor;
+
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+@Command(name = "processed", descriptions = { "A command with a binder generated at build time", "\n\"quoted\"\tline" })
+public class ProcessedCommand {
+	String[] params;
+
+	@Option(description = "a bool flag", opt = { "-b", "--boolean" })
+	boolean b;
+
+	@Option(description = "an int", opt = { "-i", "--int" }, required = true)
+	int i = 9;
+
+	@Option(description = "a char", opt = { "-c" })
+	char c;
+
+	@Option(description = "a path", opt = { "--path" }, hidden = true)
+	Path path;
+
+	@Option(description = "a string", opt = { "-s", "--string" })
+	String str;
+
+	@Option(description = "a level", opt = { "--level" })
+	Level level;
+
+	enum Level {
+		LOW, HIGH
+	}
+
+	void run(OptionParser parser, String[] params) {
+		this.params = params;
+	}
+
+	@Command(name = "nested")
+	static class Nested {
+		@Option(description = "", opt = { "-l" })
+		long l;
+
+		@Option(description = "", opt = { "-n" }, split = ",")
+		List<Integer> ns;
+
+		@Option(description = "", opt = { "-v" }, count = true)
+		int v;
+
+		@Option(description = "", opt = { "-D" })
+		Map<String, Long> props;
+	}
+
+	@Command(name = "private-field")
+	static class PrivateField {
+		@Option(description = "", opt = { "-l" })
+		private long l;
+	}
+
+	@Command(name = "private-type")
+	static class PrivateType {
+		@Option(description = "", opt = { "-m" })
+		Mode mode;
+
+		@Option(description = "", opt = { "-M" })
+		List<Mode> modes;
+
+		private enum Mode {
+			ON, OFF
+		}
+
+		boolean on() {
+			return mode == Mode.ON && modes.equals(List.of(Mode.OFF));
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package com.github.ryenus.rop;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.ryenus.rop.OptionParser.ArgFiles;
+
+/**
+ * Iterate the command line args, or the tokens of a command line, with each
+ * {@literal "@file"} token expanded in place to the args read from the file,
+ * as with javac, unless disabled. A
+ * leading {@literal "@@"} escapes a literal {@literal '@'}. A relative file is
+ * resolved against the {@link Daemon#workingDir() working directory}, the
+ * client's one in a {@link Daemon} request.
+ *
+ * <p>
+ * The file is memory-mapped and tokenized lazily, one arg at a time, so it's
+ * never read into a single String or an array of all its args.
+ * </p>
+ */
+final class ArgIterator implements Iterator<String> {
+	private final String[] args;
+	private final Iterator<String> tokens; // null if iterating the args
+	private final ArgFiles syntax;
+	private int i;
+	private FileTokens file; // the @file being expanded
+	private String next;
+	private int nextIndex;
+	private int index = -1;
+
+	ArgIterator(String[] args, ArgFiles syntax) {
+		this.args = args;
+		this.tokens = null;
+		this.syntax = syntax;
+	}
+
+	/**
+	 * Iterate the tokens read lazily, which are not indexed.
+	 */
+	ArgIterator(Iterator<String> tokens, ArgFiles syntax) {
+		this.args = new String[0];
+		this.tokens = tokens;
+		this.syntax = syntax;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null) {
+			if (file != null) {
+				next = file.next();
+				nextIndex = -1;
+				if (next == null) {
+					file = null;
+				}
+			} else if (i < args.length) {
+				nextIndex = i;
+				expand(args[i++]);
+			} else if (tokens != null && tokens.hasNext()) {
+				nextIndex = -1;
+				expand(tokens.next());
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void expand(String arg) {
+		if (syntax != ArgFiles.DISABLED && arg.length() > 1 && arg.charAt(0) == '@') {
+			if (arg.charAt(1) == '@') {
+				next = arg.substring(1);
+			} else {
+				file = new FileTokens(Daemon.workingDir().resolve(arg.substring(1)), syntax == ArgFiles.NUL_DELIMITED);
+			}
+		} else {
+			next = arg;
+		}
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		String arg = next;
+		next = null;
+		index = nextIndex;
+		return arg;
+	}
+
+	/**
+	 * @return the index in the args of the last arg returned by
+	 *         {@link #next()}, or -1 if it's read from a file or a line
+	 */
+	int index() {
+		return index;
+	}
+
+	/**
+	 * The args of a file, in UTF-8, either separated by whitespace, with
+	 * quoting and {@literal '#'} comments, or delimited by NUL, as with the
+	 * output of {@code find -print0}.
+	 *
+	 * <p>
+	 * For the former, as with javac, an arg with whitespace can be enclosed in
+	 * single or double quotes, in which a backslash escapes the next character,
+	 * with {@literal \n}, {@literal \t}, {@literal \r} and {@literal \f} for the
+	 * control characters. Outside of quotes, a backslash is a literal, so
+	 * Windows paths work as is.
+	 * </p>
+	 */
+	private static final class FileTokens {
+		private static final long WINDOW = Integer.MAX_VALUE; // the max size of a mapping
+
+		private final Path path;
+		private final boolean nul;
+		private final MappedByteBuffer[] buffers;
+		private int b;
+		private byte[] token = new byte[256];
+		private int len;
+
+		FileTokens(Path path, boolean nul) {
+			this.path = path;
+			this.nul = nul;
+			try (FileChannel channel = FileChannel.open(path)) { // the mappings stay valid after closing
+				long size = channel.size();
+				buffers = new MappedByteBuffer[(int) ((size + WINDOW - 1) / WINDOW)];
+				for (int k = 0; k < buffers.length; k++) {
+					long position = k * WINDOW;
+					buffers[k] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+				}
+			} catch (IOException | RuntimeException e) {
+				throw new OptParseException(String.format("Unable to read the argument file '%s'", path), e);
+			}
+		}
+
+		private int read() {
+			while (b < buffers.length) {
+				if (buffers[b].hasRemaining()) {
+					return buffers[b].get() & 0xff;
+				}
+				buffers[b++] = null; // done with this mapping
+			}
+			return -1;
+		}
+
+		private void append(int c) {
+			if (len == token.length) {
+				token = Arrays.copyOf(token, len * 2);
+			}
+			token[len++] = (byte) c;
+		}
+
+		/**
+		 * @return the next arg, or null at the end of the file
+		 */
+		String next() {
+			len = 0;
+			return nul ? nextDelimited() : nextQuoted();
+		}
+
+		private String nextDelimited() {
+			int c = read();
+			if (c == -1) {
+				return null;
+			}
+
+			for (; c != -1 && c != 0; c = read()) {
+				append(c);
+			}
+			return new String(token, 0, len, StandardCharsets.UTF_8);
+		}
+
+		private String nextQuoted() {
+			int c;
+			while (true) { // skip whitespace and comments
+				c = read();
+				if (c == -1) {
+					return null;
+				} else if (c == '#') {
+					while (c != -1 && c != '\n') {
+						c = read();
+					}
+				} else if (!isSpace(c)) {
+					break;
+				}
+			}
+
+			int quote = 0;
+			for (; c != -1; c = read()) {
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					} else if (c == '\\') {
+						c = read();
+						if (c == -1) {
+							break;
+						}
+						append(unescape(c));
+					} else {
+						append(c);
+					}
+				} else if (isSpace(c)) {
+					break;
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else {
+					append(c);
+				}
+			}
+
+			if (quote != 0) {
+				throw new OptParseException(String.format("Unterminated quote %s in the argument file '%s'", (char) quote, path));
+			}
+			return new String(token, 0, len, StandardCharsets.UTF_8);
+		}
+
+		private static boolean isSpace(int c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+		}
+
+		private static int unescape(int c) {
+			switch (c) {
+			case 'n':
+				return '\n';
+			case 't':
+				return '\t';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			default:
+				return c;
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.github.ryenus.rop;
+
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The results of {@link OptionParser#parseAll(Iterable, boolean)}, one per
+ * command line in the same order, with the throughput of the batch.
+ */
+public final class BatchResult extends AbstractList<ParseResult> implements RandomAccess {
+	private final ParseResult[] results;
+	private final int failures;
+	private final long nanos;
+
+	BatchResult(ParseResult[] results, long nanos) {
+		this.results = results;
+		this.nanos = nanos;
+		int failures = 0;
+		for (ParseResult result : results) {
+			if (!result.ok()) {
+				failures++;
+			}
+		}
+		this.failures = failures;
+	}
+
+	@Override
+	public ParseResult get(int index) {
+		return results[index];
+	}
+
+	@Override
+	public int size() {
+		return results.length;
+	}
+
+	/**
+	 * @return the number of command lines failed to parse
+	 */
+	public int failures() {
+		return failures;
+	}
+
+	/**
+	 * @return the time taken to parse all the command lines
+	 */
+	public Duration elapsed() {
+		return Duration.ofNanos(nanos);
+	}
+
+	/**
+	 * @return the number of command lines parsed per second
+	 */
+	public double throughput() {
+		return nanos == 0 ? 0 : results.length * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d command lines, %d failed, in %d ms (%.0f lines/s)", results.length, failures, elapsed().toMillis(), throughput());
+	}
+}
@@ -0,0 +1,144 @@
+package com.github.ryenus.rop;
+
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+
+/**
+ * A reflection-free binding of a {@link Command} class, generated at build
+ * time by the {@code rop-processor} annotation processor.
+ *
+ * <p>
+ * For a Command class {@code com.example.Foo}, the generated binder is named
+ * {@code com.example.Foo_RopBinder}. When it's present, {@link OptionParser}
+ * picks it up automatically to get the option table, create the command
+ * instance and assign the option fields directly, otherwise it falls back to
+ * reflection.
+ * </p>
+ *
+ * <p>
+ * This class is not meant to be extended by hand.
+ * </p>
+ */
+public abstract class CommandBinder {
+	static final String SUFFIX = "_RopBinder";
+
+	protected CommandBinder() {
+	}
+
+	/**
+	 * @return the {@link Command} annotation of the bound class
+	 */
+	protected abstract Command command();
+
+	/**
+	 * @return the {@link Option} annotations, one per option field
+	 */
+	protected abstract Option[] options();
+
+	/**
+	 * @return the option field names, in the same order as {@link #options()}
+	 */
+	protected abstract String[] names();
+
+	/**
+	 * @return the option field types, in the same order as {@link #options()}
+	 */
+	protected abstract Class<?>[] types();
+
+	/**
+	 * @return the type arguments of the List or Set option fields, and the
+	 *         value types of the Map option fields, null for the other fields,
+	 *         in the same order as {@link #options()}, or null if there's no
+	 *         such field
+	 */
+	protected Class<?>[] elementTypes() {
+		return null;
+	}
+
+	/**
+	 * @return a new command instance, or null if the no-arg constructor is not
+	 *         accessible to the binder
+	 */
+	protected abstract Object newInstance();
+
+	/**
+	 * Read the value of the option field at the given index.
+	 *
+	 * @param command the command instance
+	 * @param index the index of the option field
+	 * @return the option value, boxed if primitive
+	 */
+	protected abstract Object get(Object command, int index);
+
+	/**
+	 * Assign the value to the option field at the given index.
+	 *
+	 * @param command the command instance
+	 * @param index the index of the option field
+	 * @param value the option value
+	 */
+	protected abstract void set(Object command, int index, Object value);
+
+	/**
+	 * Assign the value to the {@code int} option field at the given index,
+	 * without boxing.
+	 *
+	 * @param command the command instance
+	 * @param index the index of the option field
+	 * @param value the option value
+	 */
+	protected void setInt(Object command, int index, int value) {
+		set(command, index, value);
+	}
+
+	/**
+	 * Assign the value to the {@code long} option field at the given index,
+	 * without boxing.
+	 *
+	 * @param command the command instance
+	 * @param index the index of the option field
+	 * @param value the option value
+	 */
+	protected void setLong(Object command, int index, long value) {
+		set(command, index, value);
+	}
+
+	/**
+	 * Assign the value to the {@code double} option field at the given index,
+	 * without boxing.
+	 *
+	 * @param command the command instance
+	 * @param index the index of the option field
+	 * @param value the option value
+	 */
+	protected void setDouble(Object command, int index, double value) {
+		set(command, index, value);
+	}
+
+	/**
+	 * Assign the value to the {@code boolean} option field at the given index,
+	 * without boxing.
+	 *
+	 * @param command the command instance
+	 * @param index the index of the option field
+	 * @param value the option value
+	 */
+	protected void setBoolean(Object command, int index, boolean value) {
+		set(command, index, value);
+	}
+
+	static CommandBinder of(Class<?> klass) {
+		Class<?> binderClass;
+		try {
+			binderClass = Class.forName(klass.getName() + SUFFIX, true, klass.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null; // not processed at build time, use reflection instead
+		}
+
+		try {
+			return (CommandBinder) binderClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new OptParseException(String.format("Unable to load the generated binder %s", binderClass.getName()), e);
+		}
+	}
+}
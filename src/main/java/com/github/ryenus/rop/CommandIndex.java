@@ -0,0 +1,120 @@
+package com.github.ryenus.rop;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.github.ryenus.rop.OptionParser.Command;
+
+/**
+ * An entry of the command index generated at build time by the
+ * {@code rop-processor} annotation processor, which maps a {@link Command}
+ * name to its class name, along with its descriptions, so that the command
+ * can be registered and listed in the help without loading the class.
+ *
+ * <p>
+ * The index is the resource {@value #RESOURCE}, one command per line, with
+ * the tab-separated fields: name, binary class name, then the descriptions,
+ * where backslash, tab, CR and LF are escaped as {@literal \\}, {@literal \t},
+ * {@literal \r} and {@literal \n}. Lines starting with {@literal '#'} are
+ * comments.
+ * </p>
+ */
+final class CommandIndex {
+	static final String RESOURCE = "META-INF/rop/commands";
+
+	final String name;
+	final String className;
+	final String[] descriptions;
+
+	private CommandIndex(String name, String className, String[] descriptions) {
+		this.name = name;
+		this.className = className;
+		this.descriptions = descriptions;
+	}
+
+	/**
+	 * Read the command indexes visible to the class loader, in the order of the
+	 * class path.
+	 */
+	static List<CommandIndex> load(ClassLoader loader) {
+		List<CommandIndex> list = new ArrayList<>();
+		try {
+			Enumeration<URL> urls = loader == null ? ClassLoader.getSystemResources(RESOURCE) : loader.getResources(RESOURCE);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.isEmpty() && line.charAt(0) != '#') {
+							list.add(parse(line, url));
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new OptParseException(String.format("Unable to read the command index %s", RESOURCE), e);
+		}
+		return list;
+	}
+
+	private static CommandIndex parse(String line, URL url) {
+		String[] fields = line.split("\t", -1);
+		if (fields.length < 2 || fields[0].isEmpty() || fields[1].isEmpty()) {
+			throw new OptParseException(String.format("Malformed command index entry '%s' in %s", line, url));
+		}
+
+		String[] descriptions = new String[fields.length - 2];
+		for (int i = 0; i < descriptions.length; i++) {
+			descriptions[i] = unescape(fields[i + 2]);
+		}
+		return new CommandIndex(unescape(fields[0]), fields[1], descriptions);
+	}
+
+	static String unescape(String field) {
+		if (field.indexOf('\\') < 0) {
+			return field;
+		}
+
+		StringBuilder sb = new StringBuilder(field.length());
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '\\' && i + 1 < field.length()) {
+				c = field.charAt(++i);
+				switch (c) {
+				case 't':
+					c = '\t';
+					break;
+				case 'n':
+					c = '\n';
+					break;
+				case 'r':
+					c = '\r';
+					break;
+				default: // '\\'
+				}
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return a supplier loading, but not initializing, the command class
+	 */
+	Supplier<Class<?>> supplier(ClassLoader loader) {
+		return () -> {
+			try {
+				return Class.forName(className, false, loader);
+			} catch (ClassNotFoundException e) {
+				throw new OptParseException(String.format("Unable to load %s for the command '%s' in the command index", className, name), e);
+			}
+		};
+	}
+}
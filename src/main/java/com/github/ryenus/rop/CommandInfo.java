@@ -1,51 +1,194 @@
 package com.github.ryenus.rop;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 import com.github.ryenus.rop.OptionParser.Command;
 import com.github.ryenus.rop.OptionParser.Option;
 
+/**
+ * The immutable metadata of a Command class, built once per class and shared
+ * by all the {@link OptionParser} instances.
+ */
 class CommandInfo {
-	Object command;
-	Command anno;
-	Map<String, OptionInfo> map;
-
-	CommandInfo(Object command, Command anno) {
-		this.command = command;
-		this.anno = anno;
-
-		map = new HashMap<>();
-		Class<?> klass = command.getClass();
-		for (Field field : klass.getDeclaredFields()) {
-			if (!field.isSynthetic()) {
-				Option optAnno = field.getAnnotation(Option.class);
-				if (optAnno != null) {
-					String[] opts = optAnno.opt();
-					if (opts.length == 0) {
-						throw new OptParseException(String.format("@Option.opt is empty for '%s'", field));
-					}
+	private static final ClassValue<CommandInfo> CACHE = new ClassValue<CommandInfo>() {
+		@Override
+		protected CommandInfo computeValue(Class<?> klass) {
+			return new CommandInfo(klass);
+		}
+	};
 
-					if (optAnno.required() && optAnno.hidden()) {
-						throw new OptParseException(String.format("Required option '%s' cannot be hidden for '%s'", opts[0], field));
-					}
+	final Class<?> klass;
+	final Command anno;
+	final CommandBinder binder;
+	final List<OptionInfo> options;
+	final OptionIndex index;
+	final OptionInfo[] shorts; // single-char options, indexed by the ASCII char
+	final long[] required; // a bitset of the required options, empty if none
+	final OptionInfo[] sourced; // the options with an environment variable or a config key
 
-					OptionInfo optionInfo = new OptionInfo(field, optAnno);
-					for (String opt : opts) {
-						String key = opt.replaceFirst("^(-)+", "");
-						if (map.containsKey(key)) {
-							throw new OptParseException(String.format("Conflict option '%s' found in '%s' and '%s'", opt, map.get(key).field, field));
-						}
-						map.put(key, optionInfo);
+	static CommandInfo of(Class<?> klass) {
+		return CACHE.get(klass);
+	}
+
+	private CommandInfo(Class<?> klass) {
+		this.klass = klass;
+		this.binder = CommandBinder.of(klass);
+		this.anno = binder != null ? binder.command() : klass.getAnnotation(Command.class);
+		if (anno == null) {
+			throw new OptParseException(String.format("Annotation @Command missing on %s", klass.getName()));
+		}
+
+		Map<String, OptionInfo> map = new HashMap<>();
+		List<OptionInfo> options = new ArrayList<>();
+		if (binder != null) {
+			Option[] optAnnos = binder.options();
+			String[] names = binder.names();
+			Class<?>[] types = binder.types();
+			Class<?>[] elementTypes = binder.elementTypes();
+			for (int i = 0; i < optAnnos.length; i++) {
+				String name = klass.getName() + "." + names[i];
+				Class<?> elementType = elementTypes == null ? null : elementTypes[i];
+				add(map, options, new OptionInfo(options.size(), name, types[i], elementType, optAnnos[i], new OptionInfo.BinderSetter(binder, i)));
+			}
+		} else {
+			for (Field field : klass.getDeclaredFields()) {
+				if (!field.isSynthetic()) {
+					Option optAnno = field.getAnnotation(Option.class);
+					if (optAnno != null) {
+						add(map, options, OptionInfo.of(options.size(), field, optAnno));
 					}
 				}
 			}
 		}
+
+		this.options = Collections.unmodifiableList(options);
+		this.index = new OptionIndex(options);
+		this.shorts = new OptionInfo[128];
+		for (Map.Entry<String, OptionInfo> entry : map.entrySet()) {
+			String key = entry.getKey();
+			if (key.length() == 1 && key.charAt(0) < shorts.length) {
+				shorts[key.charAt(0)] = entry.getValue();
+			}
+		}
+		this.required = required(options);
+		this.sourced = sourced(options);
+		RunInvoker.of(klass); // resolve the run method upfront
+	}
+
+	private static long[] required(List<OptionInfo> options) {
+		long[] required = new long[0];
+		for (OptionInfo oi : options) {
+			if (oi.anno.required()) {
+				if (required.length == 0) {
+					required = new long[(options.size() + 63) >>> 6];
+				}
+				required[oi.index >>> 6] |= 1L << oi.index;
+			}
+		}
+		return required;
+	}
+
+	private static OptionInfo[] sourced(List<OptionInfo> options) {
+		List<OptionInfo> sourced = new ArrayList<>();
+		for (OptionInfo oi : options) {
+			if (!oi.anno.env().isEmpty() || !oi.anno.config().isEmpty()) {
+				sourced.add(oi);
+			}
+		}
+		return sourced.toArray(new OptionInfo[0]);
+	}
+
+	private static void add(Map<String, OptionInfo> map, List<OptionInfo> options, OptionInfo optionInfo) {
+		Option optAnno = optionInfo.anno;
+		String[] opts = optAnno.opt();
+		if (opts.length == 0) {
+			throw new OptParseException(String.format("@Option.opt is empty for '%s'", optionInfo));
+		}
+
+		if (optAnno.required() && optAnno.hidden()) {
+			throw new OptParseException(String.format("Required option '%s' cannot be hidden for '%s'", opts[0], optionInfo));
+		}
+
+		for (String opt : opts) {
+			String key = OptUtils.stripDashes(opt);
+			if (map.containsKey(key)) {
+				throw new OptParseException(String.format("Conflict option '%s' found in '%s' and '%s'", opt, map.get(key), optionInfo));
+			}
+			map.put(key, optionInfo);
+		}
+		options.add(optionInfo);
+	}
+
+	Object newInstance() {
+		Object instance = binder == null ? null : binder.newInstance();
+		if (instance != null) {
+			return instance;
+		}
+
+		try {
+			Constructor<?> constr = klass.getDeclaredConstructor();
+			constr.setAccessible(true);
+			return constr.newInstance();
+		} catch (InstantiationException | IllegalAccessException | NoSuchMethodException | SecurityException | IllegalArgumentException
+			| InvocationTargetException e) {
+			throw new OptParseException(String.format("Unable to instantiate %s. Please make sure the no-arg constructor exists and is accessible. For an inner class, make sure it's static", klass), e);
+		}
+	}
+
+	/**
+	 * @return the values of the option fields, indexed by OptionInfo.index,
+	 *         with the arrays, collections and maps copied, so that those
+	 *         changed in place by a run don't change the snapshot
+	 */
+	Object[] snapshot(Object instance) {
+		Object[] values = new Object[options.size()];
+		for (OptionInfo oi : options) {
+			values[oi.index] = copy(oi, oi.setter.get(instance));
+		}
+		return values;
+	}
+
+	/**
+	 * Assign copies of the values taken by {@link #snapshot(Object)} back to
+	 * the option fields, so that the snapshot can be restored again.
+	 */
+	void restore(Object instance, Object[] values) {
+		for (OptionInfo oi : options) {
+			oi.setter.set(instance, copy(oi, values[oi.index]));
+		}
+	}
+
+	/**
+	 * @return a shallow copy of an array, or of a collection or map that the
+	 *         field can be assigned, or else the value itself, which is
+	 *         expected to be immutable
+	 */
+	private static Object copy(OptionInfo oi, Object value) {
+		if (value == null) {
+			return null;
+		} else if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+			Object array = Array.newInstance(value.getClass().getComponentType(), length);
+			System.arraycopy(value, 0, array, 0, length);
+			return array;
+		} else if (OptionInfo.isMap(oi.type)) {
+			return new LinkedHashMap<>((Map<?, ?>) value);
+		} else if (OptionInfo.isCollection(oi.type)) {
+			Collection<?> collection = (Collection<?>) value;
+			return oi.type.isAssignableFrom(ArrayList.class) ? new ArrayList<>(collection) : new LinkedHashSet<>(collection);
+		}
+		return value;
 	}
 
 	String help(boolean showNotes) {
@@ -53,8 +196,8 @@ class CommandInfo {
 		String cmdDesc = OptUtils.format(anno.descriptions(), false);
 		sb.append(cmdDesc);
 
-		List<String> list = new ArrayList<>(map.size());
-		for (OptionInfo oi : new HashSet<>(map.values())) {
+		List<String> list = new ArrayList<>(options.size());
+		for (OptionInfo oi : options) {
 			if (!oi.anno.hidden()) {
 				list.add(oi.help());
 			}
@@ -71,4 +214,4 @@ class CommandInfo {
 
 		return sb.toString();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package com.github.ryenus.rop;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A run of a command, which completes with the result of its {@code run}
+ * method, or of the {@link CompletionStage} it returns.
+ *
+ * <p>
+ * If the command has a {@link OptionParser.Command#timeout() timeout}, or the
+ * run is cancelled, the {@code run} method is interrupted if still running,
+ * otherwise the stage it returned is cancelled.
+ * </p>
+ */
+final class CommandRun {
+	private final OptionParser parser;
+	private final Object command;
+	private final Params params;
+	private final Invocation invocation; // null to run with the one of the thread
+	private final String name;
+	private final long timeout;
+	private final CompletableFuture<Object> result = new CompletableFuture<>();
+	private Thread thread; // while the run method is running
+	private CompletableFuture<?> stage; // returned by the run method
+	private boolean interrupted;
+
+	private CommandRun(OptionParser parser, Object command, Params params, Invocation invocation, CommandInfo ci) {
+		this.parser = parser;
+		this.command = command;
+		this.params = params;
+		this.invocation = invocation;
+		this.name = ci.anno.name();
+		this.timeout = ci.anno.timeout();
+	}
+
+	/**
+	 * Run the command in the current thread, and wait for the stage it
+	 * returns, if any. With a timeout, the command runs on the
+	 * {@link RunGraph#defaultExecutor() default executor} instead, with the
+	 * Invocation of the current thread, so that a run ignoring the interrupt
+	 * can't hold the current thread past the timeout.
+	 *
+	 * @return the result of the run method, or of the stage it returns
+	 */
+	static Object call(OptionParser parser, Object command, Params params) {
+		CommandInfo ci = CommandInfo.of(command.getClass());
+		if (ci.anno.timeout() <= 0) { // no need to watch the run
+			Object r = parser.invokeRun(command, params);
+			return r instanceof CompletionStage ? join(((CompletionStage<?>) r).toCompletableFuture()) : r;
+		}
+		return join(start(parser, command, params, Invocation.current(), RunGraph.defaultExecutor()));
+	}
+
+	/**
+	 * Run the command on the executor.
+	 *
+	 * @return the future of the result of the run method, or of the stage it
+	 *         returns, which interrupts the run if cancelled
+	 */
+	static CompletableFuture<Object> start(OptionParser parser, Object command, Params params, Invocation invocation, Executor executor) {
+		CommandRun run = new CommandRun(parser, command, params, invocation, CommandInfo.of(command.getClass()));
+		CompletableFuture<Object> future = new CompletableFuture<>(); // completes after the abort
+		run.result.whenComplete((r, e) -> {
+			if (e == null) {
+				future.complete(r);
+			} else {
+				run.abort();
+				future.completeExceptionally(e);
+			}
+		});
+		future.whenComplete((r, e) -> {
+			if (future.isCancelled()) {
+				run.result.cancel(true);
+			}
+		});
+
+		try {
+			executor.execute(run::run);
+		} catch (RejectedExecutionException e) {
+			run.result.completeExceptionally(new OptParseException(e));
+		}
+		return future;
+	}
+
+	private void run() {
+		synchronized (this) {
+			if (result.isDone()) { // cancelled before started
+				return;
+			}
+			thread = Thread.currentThread();
+		}
+
+		Invocation previous = invocation == null ? null : invocation.attach();
+		if (timeout > 0) {
+			ScheduledFuture<?> expiry = Timer.INSTANCE.schedule(this::expire, timeout, TimeUnit.MILLISECONDS);
+			result.whenComplete((r, e) -> expiry.cancel(false));
+		}
+
+		try {
+			Object r = parser.invokeRun(command, params);
+			if (r instanceof CompletionStage) {
+				CompletableFuture<?> f = ((CompletionStage<?>) r).toCompletableFuture();
+				returned(f);
+				f.whenComplete((v, e) -> {
+					if (e == null) {
+						result.complete(v);
+					} else {
+						result.completeExceptionally(failure(e));
+					}
+				});
+			} else {
+				returned(null);
+				result.complete(r);
+			}
+		} catch (RuntimeException | Error e) {
+			returned(null);
+			result.completeExceptionally(e);
+		} finally {
+			if (invocation != null) {
+				Invocation.restore(previous);
+			}
+		}
+	}
+
+	private synchronized void returned(CompletableFuture<?> f) {
+		thread = null;
+		stage = f;
+		if (interrupted) {
+			Thread.interrupted(); // not to leak to the next task of the thread
+		}
+		if (f != null && result.isDone()) { // expired or cancelled meanwhile
+			f.cancel(true);
+		}
+	}
+
+	private void expire() {
+		String message = String.format("Command '%s' timed out after %d ms", name, timeout);
+		result.completeExceptionally(new OptParseException(message, new TimeoutException()));
+	}
+
+	/**
+	 * Stop the run if it's still going.
+	 */
+	private synchronized void abort() {
+		if (thread != null) {
+			interrupted = true;
+			thread.interrupt();
+		} else if (stage != null) {
+			stage.cancel(true);
+		}
+	}
+
+	/**
+	 * Wait for the future, with the failure thrown as is, as if the run
+	 * method were called directly.
+	 */
+	static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException | CancellationException e) {
+			Throwable failure = failure(e);
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw (OptParseException) failure;
+		}
+	}
+
+	/**
+	 * @return the cause of the failure of a future, as thrown by the run
+	 *         method, either an OptParseException or an Error
+	 */
+	static Throwable failure(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		return cause instanceof OptParseException || cause instanceof Error ? cause : new OptParseException(cause);
+	}
+
+	/**
+	 * Expires the runs with a timeout, with a single daemon thread.
+	 */
+	private static final class Timer {
+		static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+		private static ScheduledThreadPoolExecutor create() {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread thread = new Thread(r, "rop-timeout");
+				thread.setDaemon(true);
+				return thread;
+			});
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+}
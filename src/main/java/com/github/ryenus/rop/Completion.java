@@ -0,0 +1,367 @@
+package com.github.ryenus.rop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The shell completion, which answers the candidates of a partial command
+ * line from the metadata of the commands only, without creating any command
+ * instance, nor loading the sub-commands found in the command index.
+ *
+ * <p>
+ * The option index {@value #RESOURCE}, generated at build time by the
+ * {@code rop-processor} annotation processor along with the command index,
+ * has one line per command, with the tab-separated fields: the command name,
+ * then one field per visible option, like {@literal "-p --port|arg|1|the
+ * port"}, i.e. the option keys, the kind of its argument, its arity, and the
+ * description, escaped as with the command index. The kind is empty for an
+ * option taking no argument, {@literal "file"} for a file, {@literal "=A,B"}
+ * for the enum constants, or {@literal "arg"} for any other.
+ * </p>
+ */
+final class Completion {
+	static final String RESOURCE = "META-INF/rop/options";
+	static final String FILES = ":files"; // tells the script to complete the file names
+
+	/**
+	 * An option as seen by the completion.
+	 */
+	static final class Opt {
+		final String[] keys;
+		final String kind; // empty if taking no argument
+		final int arity;
+		final String description;
+
+		Opt(String[] keys, String kind, int arity, String description) {
+			this.keys = keys;
+			this.kind = kind;
+			this.arity = arity;
+			this.description = description;
+		}
+
+		/**
+		 * @return the candidates of the argument
+		 */
+		List<String> values(String prefix) {
+			if (kind.equals("file")) {
+				return Collections.singletonList(FILES);
+			} else if (kind.startsWith("=")) {
+				List<String> values = new ArrayList<>();
+				for (String constant : kind.substring(1).split(",")) {
+					if (constant.startsWith(prefix) || constant.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+						values.add(constant);
+					}
+				}
+				return values;
+			}
+			return Collections.emptyList();
+		}
+	}
+
+	private Completion() {} // only utility methods here
+
+	/**
+	 * @return the visible options of a command
+	 */
+	static List<Opt> of(CommandInfo ci) {
+		List<Opt> opts = new ArrayList<>();
+		for (OptionInfo oi : ci.options) {
+			if (!oi.anno.hidden()) {
+				opts.add(of(oi));
+			}
+		}
+		return opts;
+	}
+
+	static Opt of(OptionInfo oi) {
+		return new Opt(oi.anno.opt(), kind(oi), oi.anno.arity(), oi.anno.description());
+	}
+
+	private static String kind(OptionInfo oi) {
+		if (!oi.takesArg()) {
+			return "";
+		}
+
+		Class<?> type = oi.elementType != null && !OptionInfo.isMap(oi.type) ? oi.elementType : oi.type;
+		if (type == File.class || type == Path.class) {
+			return "file";
+		} else if (type.isEnum()) {
+			StringBuilder sb = new StringBuilder("=");
+			for (Object constant : type.getEnumConstants()) {
+				sb.append(sb.length() > 1 ? "," : "").append(((Enum<?>) constant).name());
+			}
+			return sb.toString();
+		}
+		return "arg";
+	}
+
+	/**
+	 * Read the option indexes visible to the class loader, the first one on the
+	 * class path wins for a command.
+	 *
+	 * @return the options by command name
+	 */
+	static Map<String, List<Opt>> load(ClassLoader loader) {
+		Map<String, List<Opt>> options = new HashMap<>();
+		try {
+			Enumeration<URL> urls = loader == null ? ClassLoader.getSystemResources(RESOURCE) : loader.getResources(RESOURCE);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.isEmpty() && line.charAt(0) != '#') {
+							String[] fields = line.split("\t", -1);
+							options.putIfAbsent(CommandIndex.unescape(fields[0]), parse(fields, line, url));
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new OptParseException(String.format("Unable to read the option index %s", RESOURCE), e);
+		}
+		return options;
+	}
+
+	private static List<Opt> parse(String[] fields, String line, URL url) {
+		List<Opt> opts = new ArrayList<>(fields.length - 1);
+		for (int i = 1; i < fields.length; i++) {
+			String field = fields[i];
+			int kind = field.indexOf('|');
+			int arity = kind < 0 ? -1 : field.indexOf('|', kind + 1);
+			int desc = arity < 0 ? -1 : field.indexOf('|', arity + 1);
+			if (desc < 0) {
+				throw new OptParseException(String.format("Malformed option index entry '%s' in %s", line, url));
+			}
+
+			opts.add(new Opt(field.substring(0, kind).split(" "), field.substring(kind + 1, arity),
+				Integer.parseInt(field.substring(arity + 1, desc)), CommandIndex.unescape(field.substring(desc + 1))));
+		}
+		return opts;
+	}
+
+	/**
+	 * @param words the args on the command line up to the cursor, the last
+	 *            one being the partial arg to complete, possibly empty
+	 * @param multi whether multiple sub-commands are supported
+	 * @return the candidates, each with its description after a tab if any,
+	 *         or {@value #FILES} alone to complete the file names
+	 */
+	static List<String> candidates(OptionParser parser, List<String> words, boolean multi) {
+		String top = parser.topName();
+		if (top == null) {
+			return Collections.emptyList();
+		}
+
+		Set<String> names = parser.commandNames();
+		String current = top;
+		Set<String> used = new HashSet<>();
+		used.add(top);
+		boolean paramsOnly = false;
+		Opt pending = null; // the option taking the next args
+		int remaining = 0;
+		for (int i = 0; i < words.size() - 1; i++) {
+			String word = words.get(i);
+			if (pending != null) {
+				if (--remaining == 0) {
+					pending = null;
+				}
+			} else if (paramsOnly) {
+				continue;
+			} else if ("--".equals(word)) {
+				paramsOnly = true;
+			} else if (!used.contains(word) && (multi || used.size() == 1) && names.contains(word)) {
+				current = word;
+				used.add(word);
+			} else if (word.length() > 1 && (word.charAt(0) == '-' || word.charAt(0) == '+')) {
+				pending = pending(parser, current, word);
+				remaining = pending == null ? 0 : pending.arity;
+			}
+		}
+
+		String prefix = words.isEmpty() ? "" : words.get(words.size() - 1);
+		if (pending != null) {
+			return pending.values(prefix);
+		}
+
+		List<String> candidates = new ArrayList<>();
+		if (!paramsOnly && prefix.startsWith("-")) {
+			for (Opt opt : parser.completionOptions(current)) {
+				for (String key : opt.keys) {
+					if (key.startsWith(prefix)) {
+						candidates.add(candidate(key, opt.description));
+					}
+				}
+			}
+			if ("--help".startsWith(prefix)) {
+				candidates.add(candidate("--help", "display this help and exit"));
+			}
+			return candidates;
+		}
+
+		if (!paramsOnly && (multi || used.size() == 1)) {
+			for (String name : names) {
+				if (name.startsWith(prefix) && !used.contains(name)) {
+					String[] descriptions = parser.commandDescriptions(name);
+					candidates.add(candidate(name, descriptions == null || descriptions.length == 0 ? "" : descriptions[0]));
+				}
+			}
+		}
+		return candidates.isEmpty() ? Collections.singletonList(FILES) : candidates;
+	}
+
+	/**
+	 * @return the option taking the args after the given one, which is either
+	 *         an option key, or a cluster like {@literal "-xvf"} ending with
+	 *         the option, or null if none
+	 */
+	private static Opt pending(OptionParser parser, String command, String word) {
+		if (word.startsWith("--")) {
+			if (word.indexOf('=') > 0) { // argument attached
+				return null;
+			}
+
+			Opt opt = parser.completionOption(command, word);
+			return opt == null || opt.kind.isEmpty() ? null : opt;
+		}
+
+		List<Opt> opts = parser.completionOptions(command);
+		Opt exact = find(opts, word);
+		if (exact != null) {
+			return exact.kind.isEmpty() ? null : exact;
+		}
+
+		for (int i = 1; i < word.length(); i++) {
+			Opt opt = find(opts, "-" + word.charAt(i));
+			if (opt != null && !opt.kind.isEmpty()) {
+				return i == word.length() - 1 ? opt : null; // unless argument attached
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the option of the long option key, or of a unique prefix of the
+	 *         long option keys, as with {@link OptionIndex#find}, or null
+	 */
+	static Opt findLong(List<Opt> opts, String word) {
+		Opt exact = find(opts, word);
+		if (exact != null) {
+			return exact;
+		}
+
+		Opt found = null;
+		for (Opt opt : opts) {
+			for (String key : opt.keys) {
+				if (key.startsWith("--") && key.startsWith(word) && opt != found) {
+					if (found != null) {
+						return null; // ambiguous
+					}
+					found = opt;
+				}
+			}
+		}
+		return found;
+	}
+
+	private static Opt find(List<Opt> opts, String word) {
+		String key = word.charAt(0) == '+' ? "-" + word.substring(1) : word;
+		for (Opt opt : opts) {
+			for (String k : opt.keys) {
+				if (k.equals(key)) {
+					return opt;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static String candidate(String value, String description) {
+		String desc = description.trim();
+		int newline = desc.indexOf('\n');
+		return desc.isEmpty() ? value : value + "\t" + (newline < 0 ? desc : desc.substring(0, newline));
+	}
+
+	/**
+	 * @return the completion script of the program for the shell, which calls
+	 *         the program with {@value OptionParser#COMPLETE} for the
+	 *         candidates
+	 */
+	static String script(String shell, String program) {
+		String fn = "_rop_" + program.replaceAll("[^A-Za-z0-9_]", "_");
+		switch (shell) {
+		case "bash":
+			return String.join("\n",
+				"# bash completion for " + program,
+				fn + "() {",
+				"    local line=\"${COMP_LINE:0:COMP_POINT}\" words candidates",
+				"    read -ra words <<< \"$line\"",
+				"    [[ \"$line\" =~ [[:space:]]$ ]] && words+=(\"\")",
+				"    local IFS=$'\\n'",
+				"    candidates=($(command \"${words[0]}\" " + OptionParser.COMPLETE + " \"${words[@]:1}\" 2>/dev/null | cut -f1))",
+				"    if [[ \"${candidates[0]}\" == \"" + FILES + "\" ]]; then",
+				"        compopt -o default 2>/dev/null",
+				"        COMPREPLY=()",
+				"    else",
+				"        COMPREPLY=(\"${candidates[@]}\")",
+				"    fi",
+				"}",
+				"complete -F " + fn + " " + program,
+				"");
+		case "zsh":
+			return String.join("\n",
+				"#compdef " + program,
+				fn + "() {",
+				"    local -a lines candidates",
+				"    local line",
+				"    lines=(\"${(@f)$(command ${words[1]} " + OptionParser.COMPLETE + " \"${(@)words[2,CURRENT]}\" 2>/dev/null)}\")",
+				"    if [[ \"${lines[1]}\" == \"" + FILES + "\" ]]; then",
+				"        _files",
+				"        return",
+				"    fi",
+				"    for line in \"${lines[@]}\"; do",
+				"        [[ -z \"$line\" ]] && continue",
+				"        if [[ \"$line\" == *$'\\t'* ]]; then",
+				"            candidates+=(\"${${line%%$'\\t'*}//:/\\\\:}:${line#*$'\\t'}\")",
+				"        else",
+				"            candidates+=(\"${line//:/\\\\:}\")",
+				"        fi",
+				"    done",
+				"    _describe '" + program + "' candidates",
+				"}",
+				"compdef " + fn + " " + program,
+				"");
+		case "fish":
+			return String.join("\n",
+				"# fish completion for " + program,
+				"function " + fn,
+				"    set -l cur (commandline -ct)",
+				"    set -l words (commandline -opc) \"$cur\"",
+				"    set -l lines (command $words[1] " + OptionParser.COMPLETE + " $words[2..-1] 2>/dev/null)",
+				"    if test \"$lines[1]\" = \"" + FILES + "\"",
+				"        __fish_complete_path \"$cur\"",
+				"        return",
+				"    end",
+				"    printf '%s\\n' $lines",
+				"end",
+				"complete -c " + program + " -f -a '(" + fn + ")'",
+				"");
+		default:
+			throw new OptParseException(String.format("Unsupported shell '%s', expected bash, zsh or fish", shell));
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package com.github.ryenus.rop;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The option values of a config file, parsed once and cached until the file
+ * is modified, so that a {@link Daemon} or a {@link Repl} parsing many command
+ * lines doesn't read the file each time.
+ *
+ * <p>
+ * A {@literal ".properties"} file is read as with {@link Properties}, and any
+ * other file as a subset of TOML: {@literal "key = value"} lines, with
+ * {@literal "[table]"} headers prefixing the keys of the table like
+ * {@literal "table.key"}, basic and literal strings, and single-line arrays,
+ * whose elements are the values of a multi-valued option. The values are kept
+ * as strings, to be converted as the option arguments.
+ * </p>
+ */
+final class ConfigFile {
+	private static final Map<Path, ConfigFile> CACHE = new ConcurrentHashMap<>();
+
+	private final FileTime modified;
+	private final long size;
+	private final Map<String, List<String>> values;
+
+	private ConfigFile(FileTime modified, long size, Map<String, List<String>> values) {
+		this.modified = modified;
+		this.size = size;
+		this.values = values;
+	}
+
+	/**
+	 * @param path the config file, relative to the working directory of the
+	 *            invocation if not absolute
+	 * @return the values by key, unmodifiable, or empty if the file doesn't
+	 *         exist
+	 */
+	static Map<String, List<String>> load(Path path) {
+		Path file = Daemon.workingDir().resolve(path).normalize();
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			CACHE.remove(file);
+			return Collections.emptyMap();
+		} catch (IOException e) {
+			throw new OptParseException(String.format("Unable to read the config file %s", file), e);
+		}
+
+		ConfigFile cached = CACHE.get(file);
+		if (cached != null && cached.modified.equals(attrs.lastModifiedTime()) && cached.size == attrs.size()) {
+			return cached.values;
+		}
+
+		Map<String, List<String>> values;
+		try {
+			values = Collections.unmodifiableMap(file.toString().endsWith(".properties") ? properties(file) : toml(file));
+		} catch (IOException e) {
+			throw new OptParseException(String.format("Unable to read the config file %s", file), e);
+		}
+		CACHE.put(file, new ConfigFile(attrs.lastModifiedTime(), attrs.size(), values));
+		return values;
+	}
+
+	private static Map<String, List<String>> properties(Path file) throws IOException {
+		Properties props = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			props.load(reader);
+		}
+
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		for (String key : props.stringPropertyNames()) {
+			values.put(key, Collections.singletonList(props.getProperty(key)));
+		}
+		return values;
+	}
+
+	private static Map<String, List<String>> toml(Path file) throws IOException {
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		String table = "";
+		int n = 0;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			n++;
+			Toml toml = new Toml(line, file, n);
+			toml.skipBlanks();
+			if (toml.end()) {
+				continue;
+			}
+
+			if (toml.peek() == '[') {
+				toml.pos++;
+				table = toml.key() + ".";
+				toml.expect(']');
+			} else {
+				String key = table + toml.key();
+				toml.expect('=');
+				values.put(key, toml.value());
+			}
+			toml.expectEnd();
+		}
+		return values;
+	}
+
+	/**
+	 * A scanner of a line of TOML, without regex.
+	 */
+	private static final class Toml {
+		private final String line;
+		private final Path file;
+		private final int n;
+		private int pos;
+
+		Toml(String line, Path file, int n) {
+			this.line = line;
+			this.file = file;
+			this.n = n;
+		}
+
+		boolean end() {
+			return pos == line.length() || line.charAt(pos) == '#';
+		}
+
+		char peek() {
+			return line.charAt(pos);
+		}
+
+		void skipBlanks() {
+			while (pos < line.length() && (line.charAt(pos) == ' ' || line.charAt(pos) == '\t')) {
+				pos++;
+			}
+		}
+
+		void expect(char c) {
+			skipBlanks();
+			if (pos == line.length() || line.charAt(pos) != c) {
+				throw error(String.format("'%s' expected", c));
+			}
+			pos++;
+			skipBlanks();
+		}
+
+		void expectEnd() {
+			skipBlanks();
+			if (!end()) {
+				throw error("Unexpected '" + line.substring(pos) + "'");
+			}
+		}
+
+		/**
+		 * @return a bare, quoted, or dotted key
+		 */
+		String key() {
+			StringBuilder key = new StringBuilder();
+			while (true) {
+				skipBlanks();
+				if (pos < line.length() && (peek() == '"' || peek() == '\'')) {
+					key.append(string());
+				} else {
+					int start = pos;
+					while (pos < line.length() && isBare(line.charAt(pos))) {
+						pos++;
+					}
+					if (start == pos) {
+						throw error("Key expected");
+					}
+					key.append(line, start, pos);
+				}
+
+				skipBlanks();
+				if (pos == line.length() || peek() != '.') {
+					return key.toString();
+				}
+				key.append('.');
+				pos++;
+			}
+		}
+
+		private static boolean isBare(char c) {
+			return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-';
+		}
+
+		List<String> value() {
+			if (pos < line.length() && peek() == '[') {
+				pos++;
+				List<String> values = new ArrayList<>();
+				skipBlanks();
+				while (pos < line.length() && peek() != ']') {
+					values.add(scalar());
+					skipBlanks();
+					if (pos < line.length() && peek() == ',') {
+						pos++;
+						skipBlanks();
+					} else {
+						break;
+					}
+				}
+				expect(']');
+				return Collections.unmodifiableList(values);
+			}
+			return Collections.singletonList(scalar());
+		}
+
+		/**
+		 * @return a string, or a number, boolean or date as is
+		 */
+		private String scalar() {
+			if (pos < line.length() && (peek() == '"' || peek() == '\'')) {
+				return string();
+			}
+
+			int start = pos;
+			while (pos < line.length() && " \t,]#".indexOf(line.charAt(pos)) < 0) {
+				pos++;
+			}
+			if (start == pos) {
+				throw error("Value expected");
+			}
+			return line.substring(start, pos);
+		}
+
+		private String string() {
+			char quote = line.charAt(pos++);
+			StringBuilder sb = new StringBuilder();
+			while (pos < line.length()) {
+				char c = line.charAt(pos++);
+				if (c == quote) {
+					return sb.toString();
+				} else if (c == '\\' && quote == '"' && pos < line.length()) {
+					c = line.charAt(pos++);
+					switch (c) {
+					case 'n':
+						sb.append('\n');
+						break;
+					case 't':
+						sb.append('\t');
+						break;
+					case 'r':
+						sb.append('\r');
+						break;
+					case 'u':
+						try {
+							sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+						} catch (IndexOutOfBoundsException | NumberFormatException e) {
+							throw error("Invalid escape");
+						}
+						pos += 4;
+						break;
+					default: // '"', '\\'
+						sb.append(c);
+					}
+				} else {
+					sb.append(c);
+				}
+			}
+			throw error("Unterminated string");
+		}
+
+		private OptParseException error(String message) {
+			return new OptParseException(String.format("%s at line %d of the config file %s", message, n, file));
+		}
+	}
+}
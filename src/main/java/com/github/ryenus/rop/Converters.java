@@ -0,0 +1,137 @@
+package com.github.ryenus.rop;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.github.ryenus.rop.OptionParser.Option;
+
+/**
+ * The built-in {@link ValueConverter}s, while the ones added to an
+ * {@link OptionParser} take precedence for its own commands.
+ */
+final class Converters {
+
+	private Converters() {} // only utility methods here
+
+	/*
+	 * Markers for the primitive fields which are set without boxing, the
+	 * parser checks for them by identity rather than calling them.
+	 */
+	static final ValueConverter<Integer> INT = value -> (int) OptUtils.decode(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	static final ValueConverter<Long> LONG = value -> OptUtils.decode(value, Long.MIN_VALUE, Long.MAX_VALUE);
+	static final ValueConverter<Double> DOUBLE = Double::parseDouble;
+
+	private static final Map<Class<?>, ValueConverter<?>> BUILTIN = new HashMap<>();
+
+	static {
+		BUILTIN.put(String.class, value -> value);
+		BUILTIN.put(int.class, INT);
+		BUILTIN.put(Integer.class, Integer::decode);
+		BUILTIN.put(long.class, LONG);
+		BUILTIN.put(Long.class, Long::decode);
+		BUILTIN.put(double.class, DOUBLE);
+		BUILTIN.put(Double.class, Double::parseDouble);
+		BUILTIN.put(byte.class, Byte::decode);
+		BUILTIN.put(Byte.class, Byte::decode);
+		BUILTIN.put(short.class, Short::decode);
+		BUILTIN.put(Short.class, Short::decode);
+		BUILTIN.put(float.class, Float::parseFloat);
+		BUILTIN.put(Float.class, Float::parseFloat);
+		BUILTIN.put(boolean.class, Converters::bool);
+		BUILTIN.put(Boolean.class, Converters::bool);
+		BUILTIN.put(char.class, value -> value.charAt(0));
+		BUILTIN.put(Character.class, value -> value.charAt(0));
+		BUILTIN.put(File.class, File::new);
+		BUILTIN.put(Path.class, Paths::get);
+		BUILTIN.put(URI.class, URI::new);
+		BUILTIN.put(Charset.class, Charset::forName);
+		BUILTIN.put(BigInteger.class, BigInteger::new);
+		BUILTIN.put(BigDecimal.class, BigDecimal::new);
+		BUILTIN.put(Duration.class, Duration::parse);
+		BUILTIN.put(Instant.class, Instant::parse);
+		BUILTIN.put(InetSocketAddress.class, Converters::socketAddress);
+	}
+
+	/**
+	 * Resolve the built-in converter for an option field.
+	 *
+	 * @return the converter, or null if the type is not supported
+	 */
+	static ValueConverter<?> of(Class<?> type, Option optAnno) {
+		ValueConverter<?> converter = BUILTIN.get(type);
+		if (converter == null) {
+			if (type.isEnum()) {
+				converter = enumConverter(type, optAnno.ignoreCase());
+			} else if (type.isAssignableFrom(String.class)) { // Object, CharSequence
+				converter = BUILTIN.get(String.class);
+			}
+		}
+		return converter;
+	}
+
+	/**
+	 * Look up the constants by name in a table built upfront, rather than with
+	 * {@link Enum#valueOf(Class, String)}, so to also support ignoring case.
+	 */
+	private static ValueConverter<?> enumConverter(Class<?> type, boolean ignoreCase) {
+		Object[] constants = type.getEnumConstants();
+		String[] names = new String[constants.length];
+		Map<String, Object> table = new HashMap<>(constants.length * 2);
+		for (int i = 0; i < constants.length; i++) {
+			names[i] = ((Enum<?>) constants[i]).name();
+			table.put(ignoreCase ? names[i].toLowerCase(Locale.ROOT) : names[i], constants[i]);
+		}
+
+		return value -> {
+			Object constant = table.get(ignoreCase ? value.toLowerCase(Locale.ROOT) : value);
+			if (constant == null) {
+				throw new IllegalArgumentException(String.format("Expected one of %s", Arrays.toString(names)));
+			}
+			return constant;
+		};
+	}
+
+	/**
+	 * Parse a boolean strictly, unlike {@link Boolean#parseBoolean(String)},
+	 * for the elements of the multi-valued options, and the boolean options
+	 * from the environment or a config file, as they take no argument on the
+	 * command line.
+	 */
+	static Boolean bool(String value) {
+		if ("true".equalsIgnoreCase(value)) {
+			return Boolean.TRUE;
+		} else if ("false".equalsIgnoreCase(value)) {
+			return Boolean.FALSE;
+		}
+		throw new IllegalArgumentException("Expected true or false");
+	}
+
+	/**
+	 * Parse {@literal "host:port"}, with an IPv6 host in brackets, like
+	 * {@literal "[::1]:8080"}.
+	 */
+	private static InetSocketAddress socketAddress(String value) {
+		int colon = value.lastIndexOf(':');
+		if (colon < 0) {
+			throw new IllegalArgumentException("Port missing, expected host:port");
+		}
+
+		String host = value.substring(0, colon);
+		if (host.length() > 1 && host.charAt(0) == '[' && host.charAt(host.length() - 1) == ']') {
+			host = host.substring(1, host.length() - 1);
+		}
+		return new InetSocketAddress(host, Integer.parseInt(value.substring(colon + 1)));
+	}
+}
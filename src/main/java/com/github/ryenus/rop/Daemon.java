@@ -0,0 +1,343 @@
+package com.github.ryenus.rop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serve the commands of an {@link OptionParser} from a warm JVM, as with
+ * nailgun, so that a command invoked many times, e.g. from shell scripts,
+ * doesn't pay the JVM startup each time.
+ *
+ * <pre>
+ * new Daemon(new OptionParser(FooCommand.class, BarCommand.class)).serve(Daemon.loopback(2113));
+ * </pre>
+ *
+ * <p>
+ * Each connection is a request with the args, the working directory and the
+ * environment of the client, which is parsed and run with its own
+ * {@link OptionParser#newSession() session}, so concurrent requests never
+ * share the command instances. While the request is handled,
+ * {@link OptionParser#stdout()} and {@link OptionParser#stderr()} of the
+ * handling thread, and the threads it starts, are sent back to the client,
+ * followed by the exit status, which is the last {@code int} returned by the
+ * {@code run} methods, 0 by default, or 1 for an error. So are
+ * {@code System.out} and {@code System.err} with
+ * {@link OptionParser#routeSystemOutput(boolean)}, which replaces them
+ * process-wide while there are requests being handled. {@code System.in} is
+ * not forwarded.
+ * </p>
+ *
+ * <p>
+ * The commands can get the working directory and the environment of the
+ * client with {@link #workingDir()} and {@link #env()}, as the ones of the JVM
+ * are shared by all the requests.
+ * </p>
+ *
+ * <p>
+ * The protocol is simple enough to be implemented by a tiny native client,
+ * all integers being big-endian 32-bit, and strings being the length
+ * followed by the UTF-8 bytes. The request is the magic number
+ * {@code 0x524f5031}, the number of args, the args, the working directory,
+ * the number of environment variables, then the name and the value of each.
+ * The response is a sequence of frames, each a byte for the type, then
+ * either the length and the bytes for stdout (1) or stderr (2), or the exit
+ * status (0), which ends the response. See {@link DaemonClient} for a client
+ * in Java. A request larger than {@value #MAX_REQUEST} bytes in total is
+ * rejected as malformed, before anything is allocated for it.
+ * </p>
+ *
+ * <p>
+ * Any local user can connect to a loopback port, so only serve commands
+ * which are fine to be run by them. On Java 16+, a Unix-domain socket,
+ * restricted by the file permissions, can be bound and passed to
+ * {@link #serve(ServerSocketChannel)} instead.
+ * </p>
+ */
+public class Daemon implements Closeable {
+	static final int MAGIC = 0x524f5031; // "ROP1"
+	static final int EXIT = 0;
+	static final int STDOUT = 1;
+	static final int STDERR = 2;
+	static final int MAX_REQUEST = 8 << 20;
+
+	private final OptionParser parser;
+	private ExecutorService executor;
+	private boolean ownExecutor;
+	private boolean multi;
+	private ServerSocketChannel server;
+
+	/**
+	 * @param parser the parser with all the commands registered, which is
+	 *            only used to create the sessions
+	 */
+	public Daemon(OptionParser parser) {
+		this.parser = Objects.requireNonNull(parser);
+	}
+
+	/**
+	 * @param multi whether to support multiple sub-commands per request
+	 * @return this Daemon to support chained invocations
+	 *
+	 * @see OptionParser#parse(String[], boolean)
+	 */
+	public Daemon multi(boolean multi) {
+		this.multi = multi;
+		return this;
+	}
+
+	/**
+	 * @param executor runs the requests, by default a new thread per
+	 *            concurrent request
+	 * @return this Daemon to support chained invocations
+	 */
+	public Daemon executor(ExecutorService executor) {
+		this.executor = Objects.requireNonNull(executor);
+		return this;
+	}
+
+	/**
+	 * Open a server socket on the loopback address.
+	 *
+	 * @param port the port, or 0 for any free port
+	 * @return the bound server socket channel
+	 * @throws IOException if failed to bind the port
+	 */
+	public static ServerSocketChannel loopback(int port) throws IOException {
+		return ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * Accept and handle the requests, till {@link #close()} is called.
+	 *
+	 * @param server a bound server socket channel, which is then owned by
+	 *            this Daemon
+	 * @throws IOException if failed to accept a connection
+	 */
+	public void serve(ServerSocketChannel server) throws IOException {
+		synchronized (this) {
+			if (this.server != null) {
+				throw new IllegalStateException("Already serving");
+			}
+
+			this.server = server;
+			if (executor == null) {
+				executor = Executors.newCachedThreadPool(r -> {
+					Thread thread = new Thread(r, "rop-daemon");
+					thread.setDaemon(true);
+					return thread;
+				});
+				ownExecutor = true;
+			}
+		}
+
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			} catch (ClosedChannelException e) { // closed by close()
+				break;
+			}
+			executor.execute(() -> handle(channel));
+		}
+	}
+
+	/**
+	 * Stop accepting requests, while the ones being handled still complete.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (server != null) {
+			server.close();
+		}
+
+		if (ownExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the working directory of the client in a request, otherwise the
+	 *         one of this JVM
+	 */
+	public static Path workingDir() {
+		Invocation invocation = Invocation.current();
+		return invocation != null && invocation.cwd != null ? invocation.cwd : Paths.get("").toAbsolutePath();
+	}
+
+	/**
+	 * @return the environment of the client in a request, otherwise the one of
+	 *         this JVM
+	 */
+	public static Map<String, String> env() {
+		Invocation invocation = Invocation.current();
+		return invocation != null && invocation.env != null ? invocation.env : System.getenv();
+	}
+
+	private void handle(SocketChannel channel) {
+		try (SocketChannel c = channel) {
+			RequestReader in = new RequestReader(new DataInputStream(new BufferedInputStream(Channels.newInputStream(c))));
+			if (in.in.readInt() != MAGIC) {
+				return; // not a client
+			}
+
+			Request request = new Request(new DataOutputStream(Channels.newOutputStream(c)));
+			String[] args;
+			Path cwd;
+			Map<String, String> env = new HashMap<>();
+			try {
+				args = new String[in.count(4)];
+				for (int i = 0; i < args.length; i++) {
+					args[i] = in.readString();
+				}
+
+				cwd = Paths.get(in.readString());
+				for (int i = in.count(8); i > 0; i--) {
+					env.put(in.readString(), in.readString());
+				}
+			} catch (ProtocolException e) {
+				request.printErr.println("error: " + e.getMessage());
+				request.exit(1);
+				return;
+			}
+
+			int status = 1;
+			boolean route = parser.routesSystemOutput();
+			if (route) {
+				Invocation.route();
+			}
+			Invocation previous = new Invocation(cwd, Collections.unmodifiableMap(env), request.out, request.err).attach();
+			try {
+				OptionParser session = parser.newSession();
+				session.output(request.printOut);
+				status = session.execute(args, multi);
+			} catch (Throwable e) { // even an Error, so the client still gets the exit status
+				request.printErr.println("error: " + (e instanceof OptParseException ? e.getMessage() : e));
+			} finally {
+				Invocation.restore(previous);
+				if (route) {
+					Invocation.unroute();
+				}
+				request.exit(status);
+			}
+		} catch (IOException e) { // the client is gone, nobody to report to
+		}
+	}
+
+	/**
+	 * Read the strings of a request, within {@link #MAX_REQUEST} bytes in
+	 * total, so that a bogus count or length can't exhaust the heap.
+	 */
+	private static final class RequestReader {
+		final DataInputStream in;
+		private int remaining = MAX_REQUEST;
+
+		RequestReader(DataInputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * @param size the minimum bytes taken by each of the counted items
+		 */
+		int count(int size) throws IOException {
+			int count = in.readInt();
+			if (count < 0 || count > (remaining -= 4) / size) {
+				throw new ProtocolException("Malformed request");
+			}
+			return count;
+		}
+
+		String readString() throws IOException {
+			int length = count(1);
+			remaining -= length;
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * The output of a request to the client.
+	 */
+	private static final class Request {
+		final DataOutputStream frames;
+		final OutputStream out;
+		final OutputStream err;
+		final PrintStream printOut;
+		final PrintStream printErr;
+
+		Request(DataOutputStream frames) {
+			this.frames = frames;
+			this.out = new BufferedOutputStream(new Frames(this, STDOUT));
+			this.err = new BufferedOutputStream(new Frames(this, STDERR));
+			this.printOut = new PrintStream(out, true);
+			this.printErr = new PrintStream(err, true);
+		}
+
+		void exit(int status) throws IOException {
+			printOut.flush();
+			printErr.flush();
+			synchronized (frames) {
+				frames.writeByte(EXIT);
+				frames.writeInt(status);
+				frames.flush();
+			}
+		}
+	}
+
+	/**
+	 * The stdout or stderr of a request, written as frames.
+	 */
+	private static final class Frames extends OutputStream {
+		private final Request request;
+		private final int type;
+
+		Frames(Request request, int type) {
+			this.request = request;
+			this.type = type;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			DataOutputStream frames = request.frames;
+			synchronized (frames) {
+				frames.writeByte(type);
+				frames.writeInt(len);
+				frames.write(b, off, len);
+				frames.flush();
+			}
+		}
+	}
+}
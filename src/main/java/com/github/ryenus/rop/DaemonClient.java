@@ -0,0 +1,99 @@
+package com.github.ryenus.rop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * The client of a {@link Daemon}, which sends the args, the working directory
+ * and the environment, then writes the output of the request to stdout and
+ * stderr, and exits with the exit status.
+ *
+ * <pre>
+ * java -Drop.daemon.port=2113 -cp rop.jar com.github.ryenus.rop.DaemonClient [args...]
+ * </pre>
+ *
+ * <p>
+ * The port can also be given by the environment variable
+ * {@code ROP_DAEMON_PORT}. As this client still starts a JVM, though a small
+ * one, a native client implementing the same protocol saves the most.
+ * </p>
+ */
+public final class DaemonClient {
+	private DaemonClient() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		String port = System.getProperty("rop.daemon.port", System.getenv("ROP_DAEMON_PORT"));
+		if (port == null) {
+			System.err.println("error: the daemon port is not set by -Drop.daemon.port or ROP_DAEMON_PORT");
+			System.exit(2);
+		}
+
+		int status;
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)))) {
+			status = run(channel, args, Paths.get("").toAbsolutePath(), System.getenv(), System.out, System.err);
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Send a request to the daemon, and write its output.
+	 *
+	 * @param channel a channel connected to the daemon
+	 * @param args the command line args
+	 * @param cwd the working directory
+	 * @param env the environment variables
+	 * @param out the stdout of the request is written to
+	 * @param err the stderr of the request is written to
+	 * @return the exit status
+	 * @throws IOException if failed to communicate with the daemon
+	 */
+	public static int run(SocketChannel channel, String[] args, Path cwd, Map<String, String> env, OutputStream out, OutputStream err) throws IOException {
+		DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+		request.writeInt(Daemon.MAGIC);
+		request.writeInt(args.length);
+		for (String arg : args) {
+			Daemon.writeString(request, arg);
+		}
+		Daemon.writeString(request, cwd.toString());
+		request.writeInt(env.size());
+		for (Map.Entry<String, String> entry : env.entrySet()) {
+			Daemon.writeString(request, entry.getKey());
+			Daemon.writeString(request, entry.getValue());
+		}
+		request.flush();
+
+		DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+		byte[] buffer = new byte[8192];
+		while (true) {
+			int type = response.readByte();
+			if (type == Daemon.EXIT) {
+				out.flush();
+				err.flush();
+				return response.readInt();
+			}
+
+			OutputStream target = type == Daemon.STDERR ? err : out;
+			for (int len = response.readInt(); len > 0;) {
+				int n = response.read(buffer, 0, Math.min(len, buffer.length));
+				if (n < 0) {
+					throw new IOException("Unexpected end of the response");
+				}
+				target.write(buffer, 0, n);
+				len -= n;
+			}
+			target.flush();
+		}
+	}
+}
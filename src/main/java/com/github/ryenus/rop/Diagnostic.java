@@ -0,0 +1,67 @@
+package com.github.ryenus.rop;
+
+/**
+ * An error found while parsing a command line with
+ * {@link OptionParser#check(String[], boolean)}, which collects all the errors
+ * rather than failing on the first one.
+ */
+public final class Diagnostic {
+	private final int index;
+	private final String token;
+	private final String option;
+	private final String message;
+	private final Throwable cause;
+
+	Diagnostic(int index, String token, String option, String message, Throwable cause) {
+		this.index = index;
+		this.token = token;
+		this.option = option;
+		this.message = message;
+		this.cause = cause;
+	}
+
+	/**
+	 * @return the position of the token among the args, counted after the
+	 *         {@literal "@file"} expansion, or -1 if not about a token, e.g. a
+	 *         missing required option
+	 */
+	public int index() {
+		return index;
+	}
+
+	/**
+	 * @return the token with the error, or null if not about a token
+	 */
+	public String token() {
+		return token;
+	}
+
+	/**
+	 * @return the option with the error, like {@literal "-f"} or
+	 *         {@literal "--file"}, or null if not about an option
+	 */
+	public String option() {
+		return option;
+	}
+
+	/**
+	 * @return the error message, as with the {@link OptParseException} thrown
+	 *         by {@link OptionParser#parse(String[], boolean)}
+	 */
+	public String message() {
+		return message;
+	}
+
+	/**
+	 * @return the underlying error, e.g. a {@link NumberFormatException}, or
+	 *         null
+	 */
+	public Throwable cause() {
+		return cause;
+	}
+
+	@Override
+	public String toString() {
+		return index < 0 ? message : String.format("arg %d '%s': %s", index, token, message);
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.ryenus.rop;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * The environment in which the commands are run, as seen by the thread
+ * running them and the threads it starts: the working directory, the
+ * environment variables, and where {@link #OUT} and {@link #ERR} go, as well
+ * as {@code System.out} and {@code System.err} while they're
+ * {@link #route() routed}.
+ *
+ * <p>
+ * Without an Invocation, e.g. outside of a {@link Daemon} request, the ones
+ * of this JVM apply.
+ * </p>
+ */
+final class Invocation {
+	private static final InheritableThreadLocal<Invocation> CURRENT = new InheritableThreadLocal<>();
+	private static volatile PrintStream systemOut; // the original ones while routed
+	private static volatile PrintStream systemErr;
+	private static PrintStream routedOut; // the replacements while routed
+	private static PrintStream routedErr;
+	private static int routed;
+
+	/*
+	 * Write to the streams of the Invocation of the writing thread, or to
+	 * System.out and System.err, without replacing them.
+	 */
+	static final PrintStream OUT = new PrintStream(new Routed(null, false), true);
+	static final PrintStream ERR = new PrintStream(new Routed(null, true), true);
+
+	final Path cwd; // null for the one of this JVM
+	final Map<String, String> env; // null for the one of this JVM
+	final OutputStream out;
+	final OutputStream err;
+
+	Invocation(Path cwd, Map<String, String> env, OutputStream out, OutputStream err) {
+		this.cwd = cwd;
+		this.env = env;
+		this.out = out;
+		this.err = err;
+	}
+
+	/**
+	 * @return the Invocation of the current thread, or null
+	 */
+	static Invocation current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return a new Invocation of the current one, or of this JVM, but with
+	 *         the output written to the given streams
+	 */
+	static Invocation redirect(OutputStream out, OutputStream err) {
+		Invocation current = CURRENT.get();
+		return current == null ? new Invocation(null, null, out, err) : new Invocation(current.cwd, current.env, out, err);
+	}
+
+	/**
+	 * @return where {@code System.out} of the current thread goes
+	 */
+	static OutputStream stdout() {
+		Invocation current = CURRENT.get();
+		if (current != null) {
+			return current.out;
+		}
+		PrintStream system = systemOut;
+		return system != null ? system : System.out;
+	}
+
+	/**
+	 * @return where {@code System.err} of the current thread goes
+	 */
+	static OutputStream stderr() {
+		Invocation current = CURRENT.get();
+		if (current != null) {
+			return current.err;
+		}
+		PrintStream system = systemErr;
+		return system != null ? system : System.err;
+	}
+
+	/**
+	 * Make this the Invocation of the current thread.
+	 *
+	 * @return the previous one, to be passed to {@link #restore(Invocation)}
+	 */
+	Invocation attach() {
+		Invocation previous = CURRENT.get();
+		CURRENT.set(this);
+		return previous;
+	}
+
+	static void restore(Invocation previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Replace {@code System.out} and {@code System.err} with the streams
+	 * writing to the ones of the Invocation of the writing thread, if any,
+	 * till the matching {@link #unroute()}.
+	 */
+	static synchronized void route() {
+		if (routed++ == 0) {
+			systemOut = System.out;
+			systemErr = System.err;
+			routedOut = new PrintStream(new Routed(systemOut, false), true);
+			routedErr = new PrintStream(new Routed(systemErr, true), true);
+			System.setOut(routedOut);
+			System.setErr(routedErr);
+		}
+	}
+
+	/**
+	 * Put back the original {@code System.out} and {@code System.err}, unless
+	 * replaced again by someone else meanwhile.
+	 */
+	static synchronized void unroute() {
+		if (--routed == 0) {
+			routedOut.flush();
+			routedErr.flush();
+			if (System.out == routedOut) {
+				System.setOut(systemOut);
+			}
+			if (System.err == routedErr) {
+				System.setErr(systemErr);
+			}
+			systemOut = null;
+			systemErr = null;
+			routedOut = null;
+			routedErr = null;
+		}
+	}
+
+	/**
+	 * System.out or System.err, routed to the Invocation of the current thread.
+	 */
+	private static final class Routed extends OutputStream {
+		private final PrintStream system; // null for the current one
+		private final boolean err;
+
+		Routed(PrintStream system, boolean err) {
+			this.system = system;
+			this.err = err;
+		}
+
+		private OutputStream target() {
+			Invocation current = CURRENT.get();
+			if (current != null) {
+				return err ? current.err : current.out;
+			}
+			return system != null ? system : err ? stderr() : stdout();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			target().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			target().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target().flush();
+		}
+	}
+}
@@ -11,18 +11,24 @@ class OptUtils {
 
 	private static final String PADDING = String.format("%36s", "");
 	private static final Pattern OPT_PREFIX = Pattern.compile("^-{1,2}"); // leading '-' or '--'
-	private static final Pattern CHAR_SPLITTER = Pattern.compile("(?!^)"); // look-ahead, do not split at '^'
 	private static final Pattern WORD_SPLITTER = Pattern.compile("(?<!^)\\s+"); // look-behind
 
 	static final String NEWLINE = "\n";
 
-	static final Comparator<CommandInfo> CMD_COMPARATOR = Comparator.comparing(o -> o.anno.name());
 	static final Comparator<String> OPT_COMPARATOR = Comparator.comparing(OptUtils::stripOptPrefix);
 
 	private static String stripOptPrefix(String optStr) {
 		return OPT_PREFIX.matcher(optStr).replaceFirst("");
 	}
 
+	static String stripDashes(String opt) { // all the leading '-'
+		int i = 0;
+		while (i < opt.length() && opt.charAt(i) == '-') {
+			i++;
+		}
+		return opt.substring(i);
+	}
+
 	static String formatOpts(String[] opts) {
 		String shortOpt = null, longOpt = null;
 		for (String opt : opts) {
@@ -86,8 +92,50 @@ class OptUtils {
 		return para.append(line.deleteCharAt(line.length() - 1)).toString();
 	}
 
-	static String[] csplit(String word) { // split to chars
-		return CHAR_SPLITTER.split(word);
+	/**
+	 * Decode a number as with {@link Long#decode(String)}, but without boxing,
+	 * and make sure it's within the range of [min, max].
+	 */
+	static long decode(String value, long min, long max) {
+		return decode(value, 0, value.length(), min, max);
+	}
+
+	/**
+	 * Decode the number at [from, to) of the value, without a substring.
+	 *
+	 * @see #decode(String, long, long)
+	 */
+	static long decode(String value, int from, int to, long min, long max) {
+		int len = to;
+		int index = from;
+		boolean negative = false;
+		if (len > from && (value.charAt(from) == '-' || value.charAt(from) == '+')) {
+			negative = value.charAt(from) == '-';
+			index++;
+		}
+
+		int radix = 10;
+		if (len - index > 1 && (value.startsWith("0x", index) || value.startsWith("0X", index))) {
+			index += 2;
+			radix = 16;
+		} else if (index < len && value.charAt(index) == '#') {
+			index++;
+			radix = 16;
+		} else if (len - index > 1 && value.charAt(index) == '0') {
+			index++;
+			radix = 8;
+		}
+
+		if (index == len || value.charAt(index) == '-' || value.charAt(index) == '+') {
+			throw new NumberFormatException(String.format("For input string: \"%s\"", value.substring(from, to)));
+		}
+
+		long magnitude = Long.parseUnsignedLong(value, index, len, radix);
+		if (Long.compareUnsigned(magnitude, negative ? -min : max) > 0) { // -Long.MIN_VALUE is 2^63 as unsigned
+			throw new NumberFormatException(String.format("Value out of range: \"%s\"", value.substring(from, to)));
+		}
+
+		return negative ? -magnitude : magnitude;
 	}
 
 	private static String[] wsplit(String sentence) { // split to words
@@ -0,0 +1,133 @@
+package com.github.ryenus.rop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The option keys of a Command, sorted to be looked up by binary search,
+ * directly against a region of the command line token, so no substring is
+ * needed.
+ *
+ * <p>
+ * Besides the exact match, the long options, i.e. the ones with the
+ * {@literal "--"} prefix, can be abbreviated to any unique prefix, as with GNU
+ * getopt_long, for example {@literal "--verb"} for {@literal "--verbose"}.
+ * </p>
+ */
+final class OptionIndex {
+	private final String[] keys;
+	private final OptionInfo[] options;
+	private final boolean[] abbreviable;
+
+	OptionIndex(List<OptionInfo> optionInfos) {
+		List<String> list = new ArrayList<>();
+		for (OptionInfo oi : optionInfos) {
+			for (String opt : oi.anno.opt()) {
+				list.add(opt);
+			}
+		}
+
+		String[] opts = list.toArray(new String[list.size()]);
+		keys = new String[opts.length];
+		for (int i = 0; i < opts.length; i++) {
+			keys[i] = OptUtils.stripDashes(opts[i]);
+		}
+		Arrays.sort(keys);
+
+		options = new OptionInfo[keys.length];
+		abbreviable = new boolean[keys.length];
+		for (OptionInfo oi : optionInfos) {
+			for (String opt : oi.anno.opt()) {
+				int i = Arrays.binarySearch(keys, OptUtils.stripDashes(opt));
+				options[i] = oi;
+				abbreviable[i] = opt.startsWith(OptionType.LONG.prefix);
+			}
+		}
+	}
+
+	/**
+	 * Find the option whose key is exactly {@code token[from, to)}.
+	 *
+	 * @return the option found, or null if there's no match
+	 */
+	OptionInfo exact(String token, int from, int to) {
+		int i = lowerBound(token, from, to);
+		if (i < keys.length && keys[i].length() == to - from && token.regionMatches(from, keys[i], 0, to - from)) {
+			return options[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Find the option by the key in {@code token[from, to)}, either an exact
+	 * match, or a unique prefix of a long option.
+	 *
+	 * @return the option found, or null if there's no match, or if the prefix
+	 *         matches more than one option, as told by
+	 *         {@link #candidates(String, int, int)}
+	 */
+	OptionInfo find(String token, int from, int to) {
+		int i = lowerBound(token, from, to);
+		if (i < keys.length && keys[i].length() == to - from && token.regionMatches(from, keys[i], 0, to - from)) {
+			return options[i];
+		}
+
+		OptionInfo found = null;
+		for (int j = i; j < keys.length && keys[j].regionMatches(0, token, from, to - from); j++) {
+			if (!abbreviable[j] || options[j] == found) {
+				continue;
+			}
+
+			if (found != null) {
+				return null;
+			}
+			found = options[j];
+		}
+
+		return found;
+	}
+
+	/**
+	 * @return the index of the first key not less than {@code token[from, to)}
+	 */
+	private int lowerBound(String token, int from, int to) {
+		int low = 0;
+		int high = keys.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(keys[mid], token, from, to) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int compare(String key, String token, int from, int to) {
+		int len = Math.min(key.length(), to - from);
+		for (int k = 0; k < len; k++) {
+			char c1 = key.charAt(k);
+			char c2 = token.charAt(from + k);
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return key.length() - (to - from);
+	}
+
+	/**
+	 * @return the long option keys prefixed by {@code token[from, to)}, with
+	 *         the {@literal "--"} prefix, more than one if ambiguous
+	 */
+	List<String> candidates(String token, int from, int to) {
+		List<String> list = new ArrayList<>();
+		for (int j = lowerBound(token, from, to); j < keys.length && keys[j].regionMatches(0, token, from, to - from); j++) {
+			if (abbreviable[j]) {
+				list.add(OptionType.LONG.prefix + keys[j]);
+			}
+		}
+		return list;
+	}
+}
@@ -1,18 +1,122 @@
 package com.github.ryenus.rop;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 
 import com.github.ryenus.rop.OptionParser.Option;
 
 class OptionInfo {
-	Field field;
-	Option anno;
-	boolean set;
+	final int index;
+	final String name;
+	final Class<?> type;
+	final Class<?> elementType; // of an array, List or Set field, the value type of a Map field, null otherwise
+	final Option anno;
+	final Setter setter;
+	final ValueConverter<?> converter; // built-in one of valueType(), null if none or not taking an argument
 
-	OptionInfo(Field field, Option optAnno) {
-		this.field = field;
+	/**
+	 * @param elementType the type argument of a List or Set field, or the value
+	 *            type of a Map field, or null to take the values as String
+	 */
+	OptionInfo(int index, String name, Class<?> type, Class<?> elementType, Option optAnno, Setter setter) {
+		this.index = index;
+		this.name = name;
+		this.type = type;
 		this.anno = optAnno;
-		this.set = false;
+		this.setter = setter;
+		if (type.isArray()) {
+			this.elementType = type.getComponentType();
+		} else if (isCollection(type) || isMap(type)) {
+			this.elementType = elementType != null ? elementType : String.class;
+		} else {
+			this.elementType = null;
+		}
+
+		if (optAnno.count() && type != int.class && type != Integer.class) {
+			throw new OptParseException(String.format("Counting option '%s' must be an int for '%s'", optAnno.opt()[0], this));
+		}
+		if (optAnno.arity() < 1) {
+			throw new OptParseException(String.format("Arity of option '%s' must be positive for '%s'", optAnno.opt()[0], this));
+		}
+		if (this.elementType == null && (optAnno.arity() != 1 || !optAnno.split().isEmpty())) {
+			throw new OptParseException(String.format("Option '%s' must be an array, List, Set or Map for arity or split for '%s'", optAnno.opt()[0], this));
+		}
+		this.converter = takesArg() ? Converters.of(valueType(), optAnno) : null;
+	}
+
+	static OptionInfo of(int index, Field field, Option optAnno) {
+		String name = field.getDeclaringClass().getName() + "." + field.getName();
+		Class<?> elementType = null;
+		Type type = field.getGenericType();
+		if (type instanceof ParameterizedType) {
+			Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+			if (isMap(field.getType()) && !(args[0] instanceof Class && ((Class<?>) args[0]).isAssignableFrom(String.class))) {
+				throw new OptParseException(String.format("Map option '%s' must have String keys for '%s'", optAnno.opt()[0], field));
+			}
+
+			Type arg = args[args.length - 1]; // the element type, or the value type of a Map
+			if (arg instanceof ParameterizedType) {
+				arg = ((ParameterizedType) arg).getRawType();
+			}
+			elementType = arg instanceof Class ? (Class<?>) arg : Object.class;
+		}
+		return new OptionInfo(index, name, field.getType(), elementType, optAnno, new HandleSetter(field));
+	}
+
+	/**
+	 * @return whether the field is a List or Set, or the like, which can be
+	 *         assigned an ArrayList or a LinkedHashSet
+	 */
+	static boolean isCollection(Class<?> type) {
+		return Collection.class.isAssignableFrom(type) && (type.isAssignableFrom(ArrayList.class) || type.isAssignableFrom(LinkedHashSet.class));
+	}
+
+	/**
+	 * @return whether the field is a Map, or the like, which can be assigned a
+	 *         LinkedHashMap
+	 */
+	static boolean isMap(Class<?> type) {
+		return Map.class.isAssignableFrom(type) && type.isAssignableFrom(LinkedHashMap.class);
+	}
+
+	/**
+	 * @return whether the option takes an argument from the command line
+	 */
+	boolean takesArg() {
+		return !anno.secret() && !anno.count() && type != boolean.class && type != Boolean.class;
+	}
+
+	/**
+	 * @return the type each argument is converted to: the element type if
+	 *         multi-valued, otherwise the field type
+	 */
+	Class<?> valueType() {
+		return multiValued() ? elementType : type;
+	}
+
+	/**
+	 * @return whether the values are collected, from all the occurrences of
+	 *         the option, or counted, rather than set one by one
+	 */
+	boolean multiValued() {
+		return anno.count() || (elementType != null && !anno.secret());
+	}
+
+	/**
+	 * @return the name of the field, without the class, as shown to the users
+	 */
+	String fieldName() {
+		return name.substring(name.lastIndexOf('.') + 1);
 	}
 
 	String help() {
@@ -20,4 +124,169 @@ class OptionInfo {
 		String descText = OptUtils.format(anno.description(), true);
 		return String.format("%s  %s", optsText, descText);
 	}
-}
\ No newline at end of file
+
+	@Override
+	public String toString() {
+		return type.getTypeName() + " " + name;
+	}
+
+	/**
+	 * Assign option values to a command. The primitive variants are only called
+	 * for fields of the exact primitive type, to bypass boxing. The values can
+	 * also be read, to snapshot the default values.
+	 */
+	interface Setter {
+		Object get(Object command);
+
+		void set(Object command, Object value);
+
+		default void setInt(Object command, int value) {
+			set(command, value);
+		}
+
+		default void setLong(Object command, long value) {
+			set(command, value);
+		}
+
+		default void setDouble(Object command, double value) {
+			set(command, value);
+		}
+
+		default void setBoolean(Object command, boolean value) {
+			set(command, value);
+		}
+	}
+
+	/**
+	 * Setter backed by a generated {@link CommandBinder}.
+	 */
+	static final class BinderSetter implements Setter {
+		private final CommandBinder binder;
+		private final int index;
+
+		BinderSetter(CommandBinder binder, int index) {
+			this.binder = binder;
+			this.index = index;
+		}
+
+		@Override
+		public Object get(Object command) {
+			return binder.get(command, index);
+		}
+
+		@Override
+		public void set(Object command, Object value) {
+			binder.set(command, index, value);
+		}
+
+		@Override
+		public void setInt(Object command, int value) {
+			binder.setInt(command, index, value);
+		}
+
+		@Override
+		public void setLong(Object command, long value) {
+			binder.setLong(command, index, value);
+		}
+
+		@Override
+		public void setDouble(Object command, double value) {
+			binder.setDouble(command, index, value);
+		}
+
+		@Override
+		public void setBoolean(Object command, boolean value) {
+			binder.setBoolean(command, index, value);
+		}
+	}
+
+	/**
+	 * Setter backed by method handles, which are resolved once at registration.
+	 */
+	static final class HandleSetter implements Setter {
+		private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+		private final MethodHandle getter; // (Object)Object
+		private final MethodHandle generic; // (Object, Object)void
+		private final MethodHandle exact; // (Object, <field type>)void
+
+		HandleSetter(Field field) {
+			try {
+				field.setAccessible(true); // also grants write access to final fields
+				MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), LOOKUP);
+				getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+				MethodHandle setter = lookup.unreflectSetter(field);
+				generic = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+				exact = setter.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+			} catch (IllegalAccessException | SecurityException | InaccessibleObjectException e) {
+				throw new OptParseException(String.format("Unable to access field %s", field), e);
+			}
+		}
+
+		@Override
+		public Object get(Object command) {
+			try {
+				return (Object) getter.invokeExact(command);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new OptParseException(e);
+			}
+		}
+
+		@Override
+		public void set(Object command, Object value) {
+			try {
+				generic.invokeExact(command, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new OptParseException(e);
+			}
+		}
+
+		@Override
+		public void setInt(Object command, int value) {
+			try {
+				exact.invokeExact(command, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new OptParseException(e);
+			}
+		}
+
+		@Override
+		public void setLong(Object command, long value) {
+			try {
+				exact.invokeExact(command, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new OptParseException(e);
+			}
+		}
+
+		@Override
+		public void setDouble(Object command, double value) {
+			try {
+				exact.invokeExact(command, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new OptParseException(e);
+			}
+		}
+
+		@Override
+		public void setBoolean(Object command, boolean value) {
+			try {
+				exact.invokeExact(command, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new OptParseException(e);
+			}
+		}
+	}
+}
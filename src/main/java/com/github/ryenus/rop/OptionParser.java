@@ -1,19 +1,18 @@
 package com.github.ryenus.rop;
 
-import java.io.File;
+import java.io.PrintStream;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-import static com.github.ryenus.rop.OptionType.*;
 import static com.github.ryenus.rop.OptUtils.NEWLINE;
 
 /**
@@ -23,10 +22,24 @@ import static com.github.ryenus.rop.OptUtils.NEWLINE;
  * @author ryenus
  */
 public class OptionParser {
+	static final String COMPLETE = "__complete";
+
 	private final Map<Class<?>, Object> byType;
 	private final Map<String, CommandInfo> byName;
+	private final Map<String, Supplier<?>> deferred;
+	private final Map<String, String[]> summaries; // descriptions of deferred commands
+	private final Map<String, List<Completion.Opt>> indexed; // options of deferred commands
+	private final Map<Class<?>, ValueConverter<?>> converters; // over the built-in ones
+	private final boolean session;
 	private CommandInfo top;
-	private CommandInfo cci;
+	private ArgFiles argFiles = ArgFiles.DISABLED;
+	private PrintStream out; // System.out if null
+	private Executor executor; // runs the sub-commands concurrently if not null
+	private boolean routeSystemOutput; // replaces System.out and System.err while running concurrently
+	private boolean completion; // answers the completion requested by "__complete"
+	private Path config; // for the options with a config key, if not null
+	private Map<Class<?>, Object[]> defaults; // option values to reset to, only if tracked
+	private List<Object> dirty; // instances used since the last reset
 
 	/**
 	 * Construct an OptionParse instance. It also accepts one or a group of,
@@ -39,6 +52,11 @@ public class OptionParser {
 	public OptionParser(Object... commands) {
 		this.byType = new HashMap<>();
 		this.byName = new HashMap<>();
+		this.deferred = new HashMap<>();
+		this.summaries = new HashMap<>();
+		this.indexed = new HashMap<>();
+		this.converters = new HashMap<>();
+		this.session = false;
 
 		for (Object command : commands) {
 			if (command instanceof Collection<?>) {
@@ -66,51 +84,531 @@ public class OptionParser {
 	 * @return the {@link OptionParser} instance to support chained invocations
 	 */
 	public OptionParser register(Object command) {
-		Class<?> klass;
-		Object instance;
-		if (command instanceof Class) {
-			klass = (Class<?>) command;
-			instance = instantiate(klass);
-		} else {
-			instance = command;
-			klass = instance.getClass();
+		Class<?> klass = command instanceof Class ? (Class<?>) command : command.getClass();
+		CommandInfo ci = CommandInfo.of(klass);
+
+		String cmdName = ci.anno.name();
+		checkName(cmdName, klass);
+		checkConverters(ci);
+
+		Object instance = command instanceof Class ? ci.newInstance() : command;
+		byType.put(klass, instance);
+		if (top == null) {
+			top = ci;
+		}
+
+		byName.put(cmdName, ci);
+		return this;
+	}
+
+	/**
+	 * Register a sub-command by its name, but defer loading and instantiating
+	 * the command class until the command is found on the command line, or
+	 * needed by {@link #showHelp()}. This keeps the cost of a CLI with many
+	 * sub-commands proportional to the sub-commands actually used.
+	 *
+	 * <pre>
+	 * parser.register("commit", () -&gt; CommitCommand.class);
+	 * </pre>
+	 *
+	 * <p>
+	 * As it's needed by every parse, the top command is always registered
+	 * immediately, even if it's registered with this method.
+	 * </p>
+	 *
+	 * @param name
+	 *            the name of the command, which must be the same as with its
+	 *            {@link Command} annotation
+	 * @param command
+	 *            supplies the command class (or its instance) on demand, as
+	 *            with {@link #register(Object)}
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 */
+	public OptionParser register(String name, Supplier<?> command) {
+		return register(name, command, null);
+	}
+
+	/**
+	 * @param descriptions the command descriptions to be shown in the help
+	 *            without loading the command, or null to load it for the help
+	 */
+	private OptionParser register(String name, Supplier<?> command, String[] descriptions) {
+		if (top == null) {
+			resolve(name, command);
+			return this;
 		}
 
-		register(klass, instance);
+		checkName(name, null);
+		deferred.put(name, command);
+		if (descriptions != null) {
+			summaries.put(name, descriptions);
+		}
 		return this;
 	}
 
-	private void register(Class<?> klass, Object instance) {
-		Command cmdAnno = klass.getAnnotation(Command.class);
-		if (cmdAnno == null) {
-			throw new OptParseException(String.format("Annotation @Command missing on %s", klass.getName()));
+	/**
+	 * Create a parser with the given top command, and all the other commands
+	 * found in the command index generated at build time by the
+	 * {@code rop-processor} annotation processor, as sub-commands.
+	 *
+	 * <p>
+	 * The sub-commands are registered by name, as with
+	 * {@link #register(String, Supplier)}, and their classes are not loaded
+	 * until they're found on the command line. The help lists them with the
+	 * descriptions from the index, while their options are shown when
+	 * {@literal "--help"} follows the sub-command, like {@code foo bar --help}.
+	 * </p>
+	 *
+	 * <p>
+	 * The index is read with the class loader of the top command. If the same
+	 * command name is found more than once, the first one on the class path
+	 * wins. The option index generated along with it is also read, so that the
+	 * shell completion doesn't load the sub-commands either.
+	 * </p>
+	 *
+	 * @param top
+	 *            the top command class or its instance
+	 *
+	 * @return a new {@link OptionParser} instance
+	 */
+	public static OptionParser fromIndex(Object top) {
+		OptionParser parser = new OptionParser(top);
+		Class<?> klass = top instanceof Class ? (Class<?>) top : top.getClass();
+		ClassLoader loader = klass.getClassLoader();
+		Map<String, List<Completion.Opt>> options = Completion.load(loader);
+		for (CommandIndex entry : CommandIndex.load(loader)) {
+			if (!parser.byName.containsKey(entry.name) && !parser.deferred.containsKey(entry.name)) {
+				parser.register(entry.name, entry.supplier(loader), entry.descriptions);
+				if (options.containsKey(entry.name)) {
+					parser.indexed.put(entry.name, options.get(entry.name));
+				}
+			}
 		}
+		return parser;
+	}
 
-		String cmdName = cmdAnno.name();
+	private void checkName(String cmdName, Class<?> klass) {
 		CommandInfo existingCmd = byName.get(cmdName);
 		if (existingCmd != null) {
 			throw new OptParseException(String.format("Unable to register '%s' command with %s, it's already registered by %s",
-					cmdName, klass, existingCmd.command.getClass()));
+					cmdName, klass, existingCmd.klass));
+		}
+
+		if (deferred.containsKey(cmdName)) {
+			throw new OptParseException(String.format("Unable to register '%s' command with %s, it's already registered", cmdName, klass));
+		}
+	}
+
+	/**
+	 * @throws OptParseException if an option of the command has no converter
+	 */
+	private void checkConverters(CommandInfo ci) {
+		for (OptionInfo oi : ci.options) {
+			if (oi.takesArg() && converter(oi) == null) {
+				throw new OptParseException(String.format("Unsupported type '%s' for '%s'", oi.valueType().getName(), oi));
+			}
+		}
+	}
+
+	/**
+	 * @return the converter of the option, added to this parser for its type,
+	 *         otherwise the built-in one, or null if none
+	 */
+	ValueConverter<?> converter(OptionInfo oi) {
+		if (!converters.isEmpty()) {
+			ValueConverter<?> converter = converters.get(oi.valueType());
+			if (converter != null) {
+				return converter;
+			}
+		}
+		return oi.converter;
+	}
+
+	/**
+	 * Add a converter for the option fields of the given type, either a new
+	 * type, or to replace a built-in converter, for the commands of this
+	 * parser and its sessions only. As an option of an unsupported type fails
+	 * the registration of its Command, add the converters before registering
+	 * the Commands using them:
+	 *
+	 * <pre>
+	 * new OptionParser().converter(Color.class, Color::decode).register(PaintCommand.class);
+	 * </pre>
+	 *
+	 * @param type
+	 *            the type of the option fields, or of the elements of the
+	 *            multi-valued ones, exactly
+	 * @param converter
+	 *            the converter
+	 * @param <T>
+	 *            the type of the option fields
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 */
+	public <T> OptionParser converter(Class<T> type, ValueConverter<? extends T> converter) {
+		converters.put(Objects.requireNonNull(type), Objects.requireNonNull(converter));
+		return this;
+	}
+
+	private CommandInfo resolve(String name, Supplier<?> supplier) {
+		Object command = supplier.get();
+		Class<?> klass = command instanceof Class ? (Class<?>) command : command.getClass();
+		CommandInfo ci = CommandInfo.of(klass);
+		if (!name.equals(ci.anno.name())) {
+			throw new OptParseException(String.format("Command %s is named '%s', but registered as '%s'", klass, ci.anno.name(), name));
+		}
+		checkConverters(ci);
+
+		if (!(command instanceof Class) && !session) { // otherwise created on demand
+			byType.put(klass, command);
 		}
 
-		byType.put(klass, instance);
-		CommandInfo ci = new CommandInfo(instance, cmdAnno);
 		if (top == null) {
 			top = ci;
 		}
 
-		byName.put(cmdName, ci);
+		byName.put(name, ci);
+		return ci;
 	}
 
-	private static Object instantiate(Class<?> klass) {
-		try {
-			Constructor<?> constr = klass.getDeclaredConstructor();
-			constr.setAccessible(true);
-			return constr.newInstance();
-		} catch (InstantiationException | IllegalAccessException | NoSuchMethodException | SecurityException | IllegalArgumentException
-			| InvocationTargetException e) {
-			throw new OptParseException(String.format("Unable to instantiate %s. Please make sure the no-arg constructor exists and is accessible. For an inner class, make sure it's static", klass), e);
+	/**
+	 * Create a new session of this parser. A session shares the registered
+	 * Commands and their metadata with this parser, but has its own command
+	 * instances, which are created on demand with the no-arg constructors.
+	 *
+	 * <p>
+	 * As parsing with a session doesn't touch this parser, sessions can be used
+	 * to parse concurrently, with one session per thread, as long as no more
+	 * Commands are registered with this parser meanwhile.
+	 * </p>
+	 *
+	 * @return a new {@link OptionParser} sharing the Commands of this one
+	 */
+	public OptionParser newSession() {
+		return new OptionParser(this);
+	}
+
+	private OptionParser(OptionParser parser) {
+		this.byType = new HashMap<>();
+		this.byName = new HashMap<>(parser.byName);
+		this.deferred = new HashMap<>(parser.deferred);
+		this.summaries = parser.summaries;
+		this.indexed = parser.indexed;
+		this.converters = new HashMap<>(parser.converters);
+		this.session = true;
+		this.top = parser.top;
+		this.argFiles = parser.argFiles;
+		this.out = parser.out;
+		this.executor = parser.executor;
+		this.routeSystemOutput = parser.routeSystemOutput;
+		this.completion = parser.completion;
+		this.config = parser.config;
+	}
+
+	/**
+	 * Enable the expansion of {@literal "@file"} args, as with javac, where each
+	 * {@literal "@file"} is replaced in place by the args read from the file,
+	 * which helps to get around the limit of the command line length. An arg
+	 * starting with a literal {@literal '@'} can then be escaped as
+	 * {@literal "@@"}. A relative file is resolved against the working
+	 * directory, the client's one in a {@link Daemon} request.
+	 *
+	 * <p>
+	 * The file is memory-mapped and read lazily while parsing, so even a huge
+	 * file is never loaded as a whole.
+	 * </p>
+	 *
+	 * @param syntax
+	 *            how the args are separated in the files, or
+	 *            {@link ArgFiles#DISABLED}, the default, to take
+	 *            {@literal "@file"} as is
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 */
+	public OptionParser argFiles(ArgFiles syntax) {
+		this.argFiles = Objects.requireNonNull(syntax);
+		return this;
+	}
+
+	/**
+	 * Read the options not on the command line from the config file, by the
+	 * {@link Option#config() config} keys. Each option is taken from, in
+	 * order of precedence, the command line, its {@link Option#env()
+	 * environment variable}, the config file, or keeps the field value as the
+	 * default, before checking the {@link Option#required() required} ones.
+	 *
+	 * <p>
+	 * A {@literal ".properties"} file is read as with
+	 * {@link java.util.Properties}, and any other file as a subset of TOML,
+	 * with {@literal "key = value"} lines, {@literal "[table]"} headers and
+	 * single-line arrays for the multi-valued options. The file is parsed once,
+	 * and again only if modified, so it's not read for each command line
+	 * parsed by a {@link Daemon} or a {@link Repl}. A file which doesn't exist
+	 * is ignored.
+	 * </p>
+	 *
+	 * @param file
+	 *            the config file, relative to the working directory, or null
+	 *            not to read any, the default
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 */
+	public OptionParser config(Path file) {
+		this.config = file;
+		return this;
+	}
+
+	Path configFile() {
+		return config;
+	}
+
+	/**
+	 * Run the sub-commands parsed in multi mode concurrently, on an executor
+	 * with a virtual thread per command on Java 21+, or the common
+	 * {@link java.util.concurrent.ForkJoinPool} otherwise.
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 *
+	 * @see #parallel(Executor)
+	 */
+	public OptionParser parallel() {
+		return parallel(RunGraph.defaultExecutor());
+	}
+
+	/**
+	 * Run the sub-commands parsed in multi mode concurrently on the given
+	 * executor, rather than one by one.
+	 *
+	 * <p>
+	 * The top command still runs first, then each sub-command is started as
+	 * soon as the ones it runs {@link Command#after() after} have completed. The
+	 * output of each command to {@link #stdout()} and {@link #stderr()} is
+	 * buffered and written in the command line order, so it's the same as if
+	 * run one by one, also for {@code System.out} and {@code System.err} with
+	 * {@link #routeSystemOutput(boolean)}. A failed command only skips the ones after it, while the
+	 * others still run, then all the failures are thrown together.
+	 * </p>
+	 *
+	 * @param executor
+	 *            runs the {@code run} methods, or null to run them one by one,
+	 *            the default
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 */
+	public OptionParser parallel(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Also buffer what the sub-commands run concurrently write to
+	 * {@code System.out} and {@code System.err} directly, as with
+	 * {@link #stdout()} and {@link #stderr()}, and send it to the client in a
+	 * {@link Daemon} request.
+	 *
+	 * <p>
+	 * This replaces {@code System.out} and {@code System.err} process-wide
+	 * while the commands run, or the requests are handled, so the output of any other thread goes through
+	 * the replacements too, though still to the original streams. They're put
+	 * back afterwards, unless replaced again by someone else meanwhile.
+	 * </p>
+	 *
+	 * @param route
+	 *            whether to replace {@code System.out} and {@code System.err},
+	 *            false by default
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 *
+	 * @see #parallel(Executor)
+	 */
+	public OptionParser routeSystemOutput(boolean route) {
+		this.routeSystemOutput = route;
+		return this;
+	}
+
+	boolean routesSystemOutput() {
+		return routeSystemOutput;
+	}
+
+	/**
+	 * The stdout for the commands, which is buffered per command while the
+	 * sub-commands {@link #parallel(Executor) run concurrently}, so that it's
+	 * written in the command line order, and sent to the client in a
+	 * {@link Daemon} request. Otherwise it writes to {@code System.out}.
+	 *
+	 * @return the stdout of the command run by the current thread
+	 */
+	public static PrintStream stdout() {
+		return Invocation.OUT;
+	}
+
+	/**
+	 * The stderr for the commands, as with {@link #stdout()}.
+	 *
+	 * @return the stderr of the command run by the current thread
+	 */
+	public static PrintStream stderr() {
+		return Invocation.ERR;
+	}
+
+	/**
+	 * Answer the completion requested by the script of
+	 * {@link #completionScript(String, String)}: when the first arg is
+	 * {@literal "__complete"}, {@link #parse(String[], boolean)} prints the
+	 * candidates for the rest of the args rather than parsing them. Otherwise,
+	 * {@literal "__complete"} is taken as any other arg.
+	 *
+	 * @param enabled
+	 *            whether to answer the completion, false by default
+	 *
+	 * @return the {@link OptionParser} instance to support chained invocations
+	 */
+	public OptionParser completion(boolean enabled) {
+		this.completion = enabled;
+		return this;
+	}
+
+	ArgIterator iterator(String[] args) {
+		return new ArgIterator(args, argFiles);
+	}
+
+	ArgIterator iterator(Iterator<String> tokens) {
+		return new ArgIterator(tokens, argFiles);
+	}
+
+	CommandInfo command(String name) {
+		CommandInfo ci = byName.get(name);
+		if (ci == null && !deferred.isEmpty()) {
+			Supplier<?> supplier = deferred.remove(name);
+			if (supplier != null) {
+				ci = resolve(name, supplier);
+			}
+		}
+		return ci;
+	}
+
+	private void resolveAll(boolean summarized) {
+		for (String name : new ArrayList<>(deferred.keySet())) {
+			if (summarized || !summaries.containsKey(name)) {
+				command(name);
+			}
+		}
+	}
+
+	String topName() {
+		return top == null ? null : top.anno.name();
+	}
+
+	/**
+	 * @return the names of all the commands, sorted, without loading any
+	 */
+	Set<String> commandNames() {
+		Set<String> names = new TreeSet<>(byName.keySet());
+		names.addAll(deferred.keySet());
+		return names;
+	}
+
+	/**
+	 * @return the descriptions of the command, without loading it if from
+	 *         the index
+	 */
+	String[] commandDescriptions(String name) {
+		CommandInfo ci = byName.get(name);
+		return ci != null ? ci.anno.descriptions() : summaries.get(name);
+	}
+
+	/**
+	 * @return the visible options of the command for the completion, from the
+	 *         option index if deferred, without creating any command instance
+	 */
+	List<Completion.Opt> completionOptions(String name) {
+		List<Completion.Opt> opts = deferred.containsKey(name) ? indexed.get(name) : null;
+		if (opts == null) {
+			CommandInfo ci = command(name);
+			opts = ci == null ? Collections.emptyList() : Completion.of(ci);
 		}
+		return opts;
+	}
+
+	/**
+	 * @return the option of the command by a long option key, or a unique
+	 *         prefix of it, as resolved by the parser, or null if none
+	 */
+	Completion.Opt completionOption(String name, String key) {
+		List<Completion.Opt> opts = deferred.containsKey(name) ? indexed.get(name) : null;
+		if (opts != null) {
+			return Completion.findLong(opts, key);
+		}
+
+		CommandInfo ci = command(name);
+		OptionInfo oi = ci == null ? null : ci.index.find(key, OptionType.LONG.prefix.length(), key.length());
+		return oi == null ? null : Completion.of(oi);
+	}
+
+	/**
+	 * Print the completion candidates for the args after {@value #COMPLETE},
+	 * as requested by the completion script.
+	 *
+	 * @return whether the args request the completion
+	 */
+	private boolean completing(String[] args, boolean multi) {
+		if (!completion || args.length == 0 || !COMPLETE.equals(args[0])) {
+			return false;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (String candidate : Completion.candidates(this, Arrays.asList(args).subList(1, args.length), multi)) {
+			sb.append(candidate).append('\n');
+		}
+		(out != null ? out : System.out).print(sb.toString());
+		return true;
+	}
+
+	Object instance(CommandInfo ci) {
+		Object instance = byType.get(ci.klass);
+		if (instance == null) {
+			instance = ci.newInstance();
+			byType.put(ci.klass, instance);
+		}
+
+		if (defaults != null) {
+			Object created = instance;
+			defaults.computeIfAbsent(ci.klass, k -> ci.snapshot(created));
+			dirty.add(instance);
+		}
+		return instance;
+	}
+
+	/**
+	 * Snapshot the option values of the command instances as the defaults,
+	 * either now, or when first used for the ones not yet created, so that
+	 * {@link #resetDefaults()} can restore them.
+	 */
+	void trackDefaults() {
+		if (defaults == null) {
+			defaults = new HashMap<>();
+			dirty = new ArrayList<>();
+			for (Map.Entry<Class<?>, Object> entry : byType.entrySet()) {
+				defaults.put(entry.getKey(), CommandInfo.of(entry.getKey()).snapshot(entry.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Restore the default option values of the command instances used since
+	 * the last reset.
+	 */
+	void resetDefaults() {
+		for (Object instance : dirty) {
+			Class<?> klass = instance.getClass();
+			CommandInfo.of(klass).restore(instance, defaults.get(klass));
+		}
+		dirty.clear();
+	}
+
+	void output(PrintStream out) {
+		this.out = out;
 	}
 
 	/**
@@ -134,19 +632,32 @@ public class OptionParser {
 	 *
 	 * <p>
 	 * If the built-in option {@literal "--help"} is found, the parser will
-	 * generate and display the help information, then call
-	 * {@code System.exit(0)}.
+	 * generate and display the help information, then stop parsing, without
+	 * calling any {@code run} method.
+	 * </p>
+	 *
+	 * <p>
+	 * With {@link #completion(boolean)} enabled, if the first arg is
+	 * {@literal "__complete"}, as passed by the script of
+	 * {@link #completionScript(String, String)}, the completion candidates for
+	 * the rest of the args are printed instead, one per line, and an empty map
+	 * is returned, without creating any command instance.
 	 * </p>
 	 *
 	 * <p>
 	 * All the parsed commands would be collected in a {@link Map}, with each
-	 * one's class as key, and it's parameters array as value.
+	 * one's class as key, and it's parameters array as value, which is only
+	 * created when it's read.
 	 * </p>
 	 *
 	 * <p>
 	 * After parsing, for each parsed command if it has the method
 	 * {@code run(OptionParser, String[])} defined, the method will be invoked
 	 * automatically, with the OptionParser object and its parameters passed in.
+	 * Instead of {@code String[]}, the parameters can also be received as a
+	 * {@code List<String>}, {@code Iterable<String>} or {@code Stream<String>},
+	 * which is a view of the args without copying, for commands processing a
+	 * huge number of parameters.
 	 * </p>
 	 *
 	 * @param args
@@ -157,180 +668,344 @@ public class OptionParser {
 	 * @return a map consists of the recognized command and their params
 	 */
 	public Map<Object, String[]> parse(String[] args, boolean multi) {
-		if (top == null) { // no command registered. nothing to do
-			throw new OptParseException("No Command registered");
+		if (completing(args, multi)) {
+			return new LinkedHashMap<>();
 		}
 
-		Map<Object, String[]> cpm = new LinkedHashMap<>();
-		List<String> params = new ArrayList<>();
-		cci = top;
+		ParseContext context = newContext(multi);
+		return complete(context, context.parse(args));
+	}
 
-		ListIterator<String> lit = Arrays.asList(args).listIterator();
-		while (lit.hasNext()) {
-			String arg = lit.next();
+	/**
+	 * Parse a whole command line, which is split into args as with the POSIX
+	 * shell, but accept only the first sub-command.
+	 *
+	 * @param line
+	 *            the command line, without the program name
+	 * @return a map consists of the recognized command and their params
+	 *
+	 * @see #parse(CharSequence, boolean)
+	 */
+	public Map<Object, String[]> parse(CharSequence line) {
+		return parse(line, false);
+	}
 
-			if ("--help".equals(arg)) {
-				showHelp();
-				return cpm;
+	/**
+	 * Parse a whole command line, e.g. received by a console, as with
+	 * {@link #parse(String[], boolean)}, but without a shell to split it into
+	 * args.
+	 *
+	 * <p>
+	 * The line is split lazily while parsing, as with the POSIX shell: args
+	 * are separated by whitespace, and can be quoted with single or double
+	 * quotes, or escaped with backslashes, while {@literal '#'} starts a
+	 * comment. There's no expansion of variables or wildcards, and characters
+	 * like {@literal '|'} or {@literal ';'} are taken literally. The args are
+	 * parsed the same way, including the {@literal "@file"} expansion and the
+	 * completion.
+	 * </p>
+	 *
+	 * @param line
+	 *            the command line, without the program name
+	 * @param multi
+	 *            whether to support multiple sub-commands, like with
+	 *            {@literal `mvn clean test`}
+	 * @return a map consists of the recognized command and their params
+	 */
+	public Map<Object, String[]> parse(CharSequence line, boolean multi) {
+		if (completion) {
+			ShellTokenizer tokens = new ShellTokenizer(line);
+			if (tokens.hasNext() && COMPLETE.equals(tokens.next()) && completing(ShellTokenizer.split(line), multi)) {
+				return new LinkedHashMap<>();
 			}
+		}
 
-			CommandInfo ci = byName.get(arg);
-			if (ci != null) {
-				if (ci == cci || cpm.containsKey(ci.command) || (!multi && cpm.size() > 0)) {
-					params.add(arg);
-				} else {
-					stage(cpm, cci, params);
-					params.clear();
-					cci = ci;
-				}
+		ParseContext context = newContext(multi);
+		return complete(context, context.parse(line));
+	}
 
-				continue;
-			}
+	/**
+	 * Parse the command line args, but accept only the first sub-command, then
+	 * run the parsed commands asynchronously.
+	 *
+	 * @param args
+	 *            this should be the command line args passed to {@code main}
+	 * @param executor
+	 *            runs the {@code run} methods
+	 * @return the future of the results of the {@code run} methods
+	 *
+	 * @see #parseAsync(String[], boolean, Executor)
+	 */
+	public CompletableFuture<Map<Object, Object>> parseAsync(String[] args, Executor executor) {
+		return parseAsync(args, false, executor);
+	}
 
-			if ("--".equals(arg)) { // treat everything else as parameters
-				while (lit.hasNext()) {
-					params.add(lit.next());
-				}
-			} else if (arg.startsWith(LONG.prefix)) {
-				String opt = arg.substring(2);
-				parseOpt(opt, lit, LONG);
-			} else if (arg.startsWith(SHORT.prefix) || arg.startsWith(REVERSE.prefix)) {
-				OptionType type = OptionType.get(arg.substring(0, 1));
-				String opt = arg.substring(1);
-				if (cci.map.containsKey(opt)) {
-					parseOpt(opt, lit, type);
-				} else {
-					String[] opts = OptUtils.csplit(opt);
-					parseOpts(opts, lit, type);
-				}
-			} else { // TODO: need 'real' unescaping logic
-				params.add(arg.startsWith("\\") ? arg.substring(1) : arg);
+	/**
+	 * Parse the command line args, as with {@link #parse(String[], boolean)},
+	 * then run the parsed commands on the executor, without waiting for them.
+	 *
+	 * <p>
+	 * A {@code run} method can also return a {@link java.util.concurrent.CompletionStage},
+	 * e.g. for I/O-bound work, with the result of the command being the one of
+	 * the stage. The commands run in the same order as with
+	 * {@link #parallel(Executor)}, the independent sub-commands concurrently.
+	 * </p>
+	 *
+	 * <p>
+	 * The future completes with a read-only map of each parsed command, in the
+	 * command line order, to the result of its {@code run} method, which is
+	 * null if it returns nothing. It fails with an {@link OptParseException}
+	 * if the args are not valid, or any command failed, or timed out as
+	 * limited by its {@link Command#timeout()}. Cancelling the future
+	 * interrupts the commands still running, and cancels the stages they
+	 * returned.
+	 * </p>
+	 *
+	 * @param args
+	 *            this should be the command line args passed to {@code main}
+	 * @param multi
+	 *            whether to support multiple sub-commands, like with
+	 *            {@literal `mvn clean test`}
+	 * @param executor
+	 *            runs the {@code run} methods
+	 * @return the future of the results of the {@code run} methods
+	 */
+	public CompletableFuture<Map<Object, Object>> parseAsync(String[] args, boolean multi, Executor executor) {
+		Objects.requireNonNull(executor);
+		ParseContext context;
+		CompletableFuture<Object[]> all;
+		try {
+			context = newContext(multi);
+			if (!context.parse(args)) { // stopped at --help
+				return CompletableFuture.completedFuture(Collections.emptyMap());
 			}
+			all = new RunGraph(this, context.cpm).start(executor);
+		} catch (OptParseException e) {
+			return CompletableFuture.failedFuture(e);
 		}
 
-		stage(cpm, cci, params);
+		Object[] commands = context.cpm.keySet().toArray();
+		CompletableFuture<Map<Object, Object>> results = all.thenApply(values -> {
+			Map<Object, Object> map = new LinkedHashMap<>();
+			for (int i = 0; i < commands.length; i++) {
+				map.put(commands[i], values[i]);
+			}
+			return Collections.unmodifiableMap(map);
+		});
+		results.whenComplete((r, e) -> {
+			if (results.isCancelled()) {
+				all.cancel(true);
+			}
+		});
+		return results;
+	}
 
-		invokeRun(cpm); // call command.run(this)
-		return cpm;
+	/**
+	 * Parse many command lines in parallel, but accept only the first
+	 * sub-command of each.
+	 *
+	 * @param lines
+	 *            the args of each command line
+	 * @return the result of each command line, in the same order, with the
+	 *         throughput
+	 *
+	 * @see #parseAll(Iterable, boolean)
+	 */
+	public BatchResult parseAll(Iterable<String[]> lines) {
+		return parseAll(lines, false);
 	}
 
-	private static void stage(Map<Object, String[]> cpm, CommandInfo ci, List<String> params) {
-		cpm.put(ci.command, params.toArray(new String[params.size()]));
-		for (OptionInfo oi : new HashSet<>(ci.map.values())) {
-			if (oi.anno.required() && !oi.set) {
-				throw new OptParseException(String.format("Required option not found for field %s", oi.field));
-			}
+	/**
+	 * Parse many command lines in parallel, each into new command instances,
+	 * e.g. to validate the command lines recorded in logs against the current
+	 * Commands. As with {@link #check(String[], boolean)}, all the errors of
+	 * each command line are collected, no {@code run} method is called, and
+	 * {@literal "--help"} just stops parsing the command line.
+	 *
+	 * <p>
+	 * The command lines are parsed with the common
+	 * {@link java.util.concurrent.ForkJoinPool}, sharing the metadata of the
+	 * Commands, while the command instances are created with the no-arg
+	 * constructors, as with {@link #newSession()}.
+	 * </p>
+	 *
+	 * @param lines
+	 *            the args of each command line
+	 * @param multi
+	 *            whether to support multiple sub-commands, like with
+	 *            {@literal `mvn clean test`}
+	 * @return the result of each command line, in the same order, with the
+	 *         throughput
+	 */
+	public BatchResult parseAll(Iterable<String[]> lines, boolean multi) {
+		List<String[]> list;
+		if (lines instanceof List && lines instanceof RandomAccess) {
+			list = (List<String[]>) lines;
+		} else {
+			list = lines instanceof Collection ? new ArrayList<>(((Collection<?>) lines).size()) : new ArrayList<>();
+			lines.forEach(list::add);
 		}
+
+		long start = System.nanoTime();
+		ParseResult[] results = new ParseResult[list.size()];
+		ThreadLocal<OptionParser> sessions = ThreadLocal.withInitial(this::newSession);
+		IntStream.range(0, results.length).parallel().forEach(i -> results[i] = sessions.get().validate(list.get(i), multi));
+		return new BatchResult(results, System.nanoTime() - start);
 	}
 
-	private void parseOpts(String[] opts, ListIterator<String> liter, OptionType optionType) {
-		for (String option : opts) {
-			parseOpt(option, liter, optionType);
-		}
+	/**
+	 * Parse many command lines lazily in parallel, but accept only the first
+	 * sub-command of each.
+	 *
+	 * @param lines
+	 *            the args of each command line
+	 * @return a parallel stream of the result of each command line
+	 *
+	 * @see #parseAll(Stream, boolean)
+	 */
+	public Stream<ParseResult> parseAll(Stream<String[]> lines) {
+		return parseAll(lines, false);
+	}
+
+	/**
+	 * Parse many command lines in parallel, as with
+	 * {@link #parseAll(Iterable, boolean)}, but lazily as the returned stream
+	 * is consumed, e.g. for more command lines than fit in memory.
+	 *
+	 * @param lines
+	 *            the args of each command line
+	 * @param multi
+	 *            whether to support multiple sub-commands, like with
+	 *            {@literal `mvn clean test`}
+	 * @return a parallel stream of the result of each command line, in the
+	 *         same encounter order
+	 */
+	public Stream<ParseResult> parseAll(Stream<String[]> lines, boolean multi) {
+		ThreadLocal<OptionParser> sessions = ThreadLocal.withInitial(this::newSession);
+		return lines.parallel().map(args -> sessions.get().validate(args, multi));
 	}
 
-	private void parseOpt(String option, ListIterator<String> liter, OptionType optionType) {
-		OptionInfo optionInfo = cci.map.get(option);
-		if (optionInfo == null) {
-			throw new OptParseException(String.format("Unknown option '%s'", option));
+	/**
+	 * Check the command line args, but accept only the first sub-command.
+	 *
+	 * @param args
+	 *            this should be the command line args passed to {@code main}
+	 * @return the parsed commands, or all the errors found
+	 *
+	 * @see #check(String[], boolean)
+	 */
+	public ParseResult check(String[] args) {
+		return check(args, false);
+	}
+
+	/**
+	 * Parse the command line args, as with {@link #parse(String[], boolean)},
+	 * but collect all the errors, e.g. unknown options, bad values and missing
+	 * required options, rather than failing on the first one, so that a long
+	 * command line can be fixed at once. No {@code run} method is called, and
+	 * {@literal "--help"} just stops parsing, without showing the help.
+	 *
+	 * <pre>
+	 * ParseResult result = parser.check(args, true);
+	 * for (Diagnostic d : result.diagnostics()) {
+	 *     System.err.println(d); // e.g. arg 3 '--colour': Unknown option 'colour'
+	 * }
+	 * </pre>
+	 *
+	 * @param args
+	 *            this should be the command line args passed to {@code main}
+	 * @param multi
+	 *            whether to support multiple sub-commands, like with
+	 *            {@literal `mvn clean test`}
+	 * @return the parsed commands, or all the errors found
+	 */
+	public ParseResult check(String[] args, boolean multi) {
+		ParseContext context = newContext(multi, false);
+		context.collectErrors();
+		boolean parsed;
+		try {
+			parsed = context.parse(args);
+		} catch (OptParseException e) { // not about the args, e.g. a bad Command
+			return new ParseResult(args, e, Collections.singletonList(new Diagnostic(-1, null, null, e.getMessage(), e.getCause())));
 		}
 
-		Field field = optionInfo.field;
-		field.setAccessible(true);
-		Class<?> fieldType = field.getType();
+		List<Diagnostic> diagnostics = context.diagnostics();
+		if (diagnostics.isEmpty()) {
+			return new ParseResult(args, Params.arrays(context.cpm), !parsed);
+		}
 
-		Object value;
-		if (optionInfo.anno.secret()) {
-			value = OptUtils.readSecret(optionInfo.anno.prompt());
-		} else if (fieldType == boolean.class || fieldType == Boolean.class) {
-			value = (optionType != REVERSE);
-		} else { // TODO: support arity
-			if (!liter.hasNext()) {
-				throw new OptParseException(String.format("Argument missing for option '%s%s'", optionType.prefix, option));
-			}
+		Diagnostic first = diagnostics.get(0);
+		String message = diagnostics.size() == 1 ? first.message() : String.format("%s (and %d more errors)", first.message(), diagnostics.size() - 1);
+		return new ParseResult(args, new OptParseException(message, first.cause()), diagnostics);
+	}
 
-			String rawValue = liter.next();
-			try {
-				value = parseValue(fieldType, rawValue);
-			} catch (Exception e)
-			{
-				throw new OptParseException("Unable to parse '" + rawValue + "' for option '" + field.getName() + "' (" + fieldType.getName() + ")", e);
-			}
+	/**
+	 * Check the args with new command instances.
+	 */
+	private ParseResult validate(String[] args, boolean multi) {
+		byType.clear(); // the instances of the last command line
+		return check(args, multi);
+	}
+
+	private ParseContext newContext(boolean multi) {
+		return newContext(multi, true);
+	}
+
+	private ParseContext newContext(boolean multi, boolean showHelp) {
+		if (top == null) { // no command registered. nothing to do
+			throw new OptParseException("No Command registered");
 		}
+		return new ParseContext(this, top, multi, showHelp);
+	}
 
-		try {
-			field.set(cci.command, value);
-			optionInfo.set = true;
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			throw new OptParseException(e);
+	private Map<Object, String[]> complete(ParseContext context, boolean parsed) {
+		if (parsed) {
+			invokeRun(context); // call command.run(this)
 		}
+		return Params.arrays(context.cpm);
 	}
 
-	private static Object parseValue(Class<?> type, String value) {
-		if (type == String.class) {
-			return value;
-		} else if (type == int.class || type == Integer.class) {
-			return Integer.decode(value);
-		} else if (type == long.class || type == Long.class) {
-			return Long.decode(value);
-		} else if (type == byte.class || type == Byte.class) {
-			return Byte.decode(value);
-		} else if (type == short.class || type == Short.class) {
-			return Short.decode(value);
-		} else if (type == double.class || type == Double.class) {
-			return Double.parseDouble(value);
-		} else if (type == float.class || type == Float.class) {
-			return Float.parseFloat(value);
-		} else if (type == char.class || type == Character.class) {
-			return value.charAt(0);
-		} else if (type == File.class) {
-			return new File(value);
-		} else if (type == Path.class) {
-			return Paths.get(value);
+	/**
+	 * Parse the args and run the parsed commands, as with
+	 * {@link #parse(String[], boolean)}, but return the exit status.
+	 *
+	 * @return the last {@code int} returned by the {@code run} methods, or 0
+	 */
+	int execute(String[] args, boolean multi) {
+		if (completing(args, multi)) {
+			return 0;
 		}
-		return value;
+
+		ParseContext context = newContext(multi);
+		Object result = context.parse(args) ? invokeRun(context) : null;
+		return result instanceof Integer ? (Integer) result : 0;
 	}
 
-	private void invokeRun(Map<Object, String[]> cpm) {
-		for (Map.Entry<Object, String[]> entry : cpm.entrySet()) {
-			invokeRun(entry.getKey(), entry.getValue());
+	/**
+	 * @return the last non-null result of the run methods
+	 */
+	private Object invokeRun(ParseContext context) {
+		if (context.cpm.size() > 2) { // sub-commands may run after one another
+			RunGraph graph = new RunGraph(this, context.cpm);
+			return executor != null ? graph.run(executor) : graph.run();
 		}
+
+		Object result = null;
+		for (Map.Entry<Object, Params> entry : context.cpm.entrySet()) {
+			Object r = CommandRun.call(this, entry.getKey(), entry.getValue());
+			if (r != null) {
+				result = r;
+			}
+		}
+		return result;
 	}
 
-	private Object invokeRun(Object cmd, String[] params) {
+	Object invokeRun(Object cmd, Params params) {
 		try {
-			try {
-				Method run = cmd.getClass().getDeclaredMethod("run", OptionParser.class, String[].class);
-				run.setAccessible(true);
-				return run.invoke(cmd, this, params);
-			} catch (NoSuchMethodException e) {
-				try {
-					Method run = cmd.getClass().getDeclaredMethod("run", String[].class, OptionParser.class);
-					run.setAccessible(true);
-					return run.invoke(cmd, params, this);
-				} catch (NoSuchMethodException e1) {
-					try {
-						Method run = cmd.getClass().getDeclaredMethod("run", String[].class);
-						run.setAccessible(true);
-						return run.invoke(cmd, (Object) params); //bypass the var-args magic
-					} catch (NoSuchMethodException e2) {
-						try {
-							Method run = cmd.getClass().getDeclaredMethod("run", OptionParser.class);
-							run.setAccessible(true);
-							return run.invoke(cmd, this);
-						} catch (NoSuchMethodException e3) {
-							try {
-								Method run = cmd.getClass().getDeclaredMethod("run");
-								run.setAccessible(true);
-								return run.invoke(cmd);
-							} catch (NoSuchMethodException e4) {
-								return null;
-							}
-						}
-					}
-				}
-			}
-		} catch (SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			return RunInvoker.of(cmd.getClass()).invokeExact(cmd, this, params);
+		} catch (OptParseException | Error e) { // as is, not to hide an OutOfMemoryError or the like
+			throw e;
+		} catch (Throwable e) {
 			throw new OptParseException(e);
 		}
 	}
@@ -340,22 +1015,59 @@ public class OptionParser {
 	 * Commands and their Options.
 	 */
 	public void showHelp() {
+		resolveAll(false);
 		StringBuilder sb = new StringBuilder();
 		sb.append(top.help(false)).append(NEWLINE);
 		sb.append(String.format("      --help %20s display this help and exit", ""));
 
-		List<CommandInfo> cmds = new ArrayList<>(byName.values());
-		cmds.remove(top);
-		cmds.sort(OptUtils.CMD_COMPARATOR);
-		for (CommandInfo ci : cmds) {
+		Map<String, String> cmds = new TreeMap<>();
+		for (CommandInfo ci : byName.values()) {
+			if (ci != top) {
+				cmds.put(ci.anno.name(), ci.help(true));
+			}
+		}
+		for (String name : deferred.keySet()) { // summarized, not loaded
+			String usage = String.format("Use '%s --help' to show its options", name);
+			cmds.put(name, OptUtils.format(summaries.get(name), false) + usage);
+		}
+
+		for (Map.Entry<String, String> entry : cmds.entrySet()) {
 			sb.append(NEWLINE).append(NEWLINE);
-			sb.append(String.format("[Command '%s']", ci.anno.name()));
+			sb.append(String.format("[Command '%s']", entry.getKey()));
 			sb.append(NEWLINE).append(NEWLINE);
-			sb.append(ci.help(true));
+			sb.append(entry.getValue());
 		}
 
 		sb.append(OptUtils.format(top.anno.notes(), true)).append(NEWLINE);
-		System.out.print(sb.toString());
+		(out != null ? out : System.out).print(sb.toString());
+	}
+
+	/**
+	 * Generate the completion script of a program for a shell, to be sourced
+	 * by the shell, like {@code eval "$(foo --completion bash)"} in
+	 * {@literal ~/.bashrc}, where {@code foo} prints this script.
+	 *
+	 * <p>
+	 * On each completion, the script runs the program with
+	 * {@literal "__complete"} and the words on the command line up to the
+	 * cursor, and {@link #parse(String[], boolean)} answers the candidates,
+	 * provided the parser has {@link #completion(boolean)} enabled:
+	 * the sub-commands, the option keys with their descriptions, or the enum
+	 * constants for an option argument, falling back to the file names. Only
+	 * the metadata of the commands is used, and with {@link #fromIndex(Object)}
+	 * the sub-commands aren't even loaded, so the answer is quick, or even
+	 * quicker from a warm {@link Daemon}.
+	 * </p>
+	 *
+	 * @param shell
+	 *            either {@literal "bash"}, {@literal "zsh"} or {@literal "fish"}
+	 * @param program
+	 *            the name of the program as typed on the command line
+	 *
+	 * @return the completion script
+	 */
+	public static String completionScript(String shell, String program) {
+		return Completion.script(shell, program);
 	}
 
 	/**
@@ -369,7 +1081,42 @@ public class OptionParser {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T get(Class<T> klass) {
-		return (T) byType.get(klass);
+		Object instance = byType.get(klass);
+		if (instance == null) { // not yet created in a session or deferred
+			resolveAll(true);
+			for (CommandInfo ci : byName.values()) {
+				if (ci.klass == klass) {
+					return (T) instance(ci);
+				}
+			}
+		}
+		return (T) instance;
+	}
+
+	/**
+	 * The syntax of the {@literal "@file"} args.
+	 *
+	 * @see OptionParser#argFiles(ArgFiles)
+	 */
+	public enum ArgFiles {
+		/**
+		 * Take {@literal "@file"} as a normal arg.
+		 */
+		DISABLED,
+
+		/**
+		 * Args are separated by whitespace, as with javac. An arg with
+		 * whitespace can be enclosed in single or double quotes, in which a
+		 * backslash escapes the next character. A {@literal '#'} at the
+		 * start of an arg begins a comment till the end of the line.
+		 */
+		QUOTED,
+
+		/**
+		 * Args are delimited by the NUL character, as with the output of
+		 * {@code find -print0}, no quoting needed.
+		 */
+		NUL_DELIMITED
 	}
 
 	/**
@@ -428,6 +1175,35 @@ public class OptionParser {
 		 * @return Command usage notes
 		 */
 		String[] notes() default {};
+
+		/**
+		 * The names of the sub-commands this one runs after, when they're
+		 * called together in multi mode, regardless of their order on the
+		 * command line. The ones not called are ignored. Otherwise, the
+		 * sub-commands run in the command line order, or concurrently with
+		 * {@link OptionParser#parallel(Executor)}.
+		 *
+		 * @return the names of the sub-commands to run before this one
+		 */
+		String[] after() default {};
+
+		/**
+		 * The time in milliseconds the {@code run} method, or the
+		 * {@link java.util.concurrent.CompletionStage} it returns, is allowed
+		 * to take, or 0 for no limit. On expiry, the {@code run} method is
+		 * interrupted, or the stage is cancelled, and the parsing fails with an
+		 * {@link OptParseException}.
+		 *
+		 * <p>
+		 * To enforce the timeout even if the {@code run} method ignores the
+		 * interrupt, it's run on another thread, a virtual one on Java 21+,
+		 * rather than the parsing one, which stops waiting for it on expiry,
+		 * while it may still go on in the background.
+		 * </p>
+		 *
+		 * @return the timeout in milliseconds
+		 */
+		long timeout() default 0;
 	}
 
 	/**
@@ -473,5 +1249,50 @@ public class OptionParser {
 		 * @return the prompt for reading input
 		 */
 		String prompt() default "password: ";
+
+		/**
+		 * Match the argument of an enum option to the constant names ignoring
+		 * case
+		 * @return whether to ignore case for enum constants
+		 */
+		boolean ignoreCase() default false;
+
+		/**
+		 * The number of arguments taken by each occurrence of an array, List
+		 * or Set option, like {@literal "--point 1 2"} for arity 2. The option
+		 * can be repeated, with the values of all the occurrences collected in
+		 * order into the field.
+		 * @return the number of arguments per occurrence
+		 */
+		int arity() default 1;
+
+		/**
+		 * The delimiter to split each argument of an array, List or Set option,
+		 * like {@literal ","} for {@literal "--ids 1,2,3"}
+		 * @return the delimiter, or empty not to split
+		 */
+		String split() default "";
+
+		/**
+		 * Count the occurrences of an int option, which takes no argument, like
+		 * 3 for {@literal "-vvv"}
+		 * @return whether to count the occurrences of the option
+		 */
+		boolean count() default false;
+
+		/**
+		 * The environment variable to read the option from, if it's not on
+		 * the command line
+		 * @return the environment variable, or empty if none
+		 */
+		String env() default "";
+
+		/**
+		 * The key in the {@link OptionParser#config(Path) config file} to read
+		 * the option from, if it's neither on the command line, nor in the
+		 * environment variable
+		 * @return the config key, or empty if none
+		 */
+		String config() default "";
 	}
 }
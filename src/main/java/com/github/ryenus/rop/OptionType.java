@@ -9,8 +9,7 @@ enum OptionType {
 		this.prefix = prefix;
 	}
 
-	public static OptionType get(String prefix) {
-		String p = prefix.intern();
-		return p == "-" ? SHORT : p == "+" ? REVERSE : LONG;
+	public static OptionType of(char prefix) {
+		return prefix == '-' ? SHORT : prefix == '+' ? REVERSE : LONG;
 	}
 }
\ No newline at end of file
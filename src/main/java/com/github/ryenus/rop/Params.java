@@ -0,0 +1,268 @@
+package com.github.ryenus.rop;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * The parameters of a command, as a read-only view without copying: the ones
+ * taken as is from the command line args are kept as index ranges into the
+ * args array, while the others, e.g. unescaped or read from an
+ * {@literal "@file"}, are kept in chunks, so that collecting millions of
+ * parameters never copies them into one big array.
+ *
+ * <p>
+ * The {@code String[]} form is only created when asked for, e.g. by a
+ * {@code run(String[])} method.
+ * </p>
+ */
+final class Params extends AbstractList<String> implements RandomAccess {
+	private static final int MIN_CHUNK = 64;
+	private static final int MAX_CHUNK = 1 << 16;
+
+	private final String[] args;
+	private String[][] arrays = new String[4][]; // per segment, either args or a chunk
+	private int[] offsets = new int[4]; // per segment, the first index in the array
+	private int[] starts = new int[4]; // per segment, the first index in this list
+	private int segments;
+	private int size;
+	private String[] chunk; // the current chunk, shared by the segments between args
+	private int chunkSize;
+	private String[] array;
+
+	Params(String[] args) {
+		this.args = args;
+	}
+
+	/**
+	 * @return the Params of the given array, which is returned as is by
+	 *         {@link #array()}
+	 */
+	static Params of(String[] array) {
+		Params params = new Params(array);
+		if (array.length > 0) {
+			params.segment(array, 0);
+			params.size = array.length;
+		}
+		params.array = array;
+		return params;
+	}
+
+	/**
+	 * Append {@code args[index]}.
+	 */
+	void appendArg(int index) {
+		int last = segments - 1;
+		if (last < 0 || arrays[last] != args || offsets[last] + count(last) != index) {
+			segment(args, index);
+		}
+		size++;
+	}
+
+	/**
+	 * Append a parameter which is not taken as is from the args.
+	 */
+	void append(String param) {
+		if (chunk == null || chunkSize == chunk.length) {
+			chunk = new String[Math.min(Math.max(MIN_CHUNK, size), MAX_CHUNK)];
+			chunkSize = 0;
+		}
+
+		int last = segments - 1;
+		if (last < 0 || arrays[last] != chunk || offsets[last] + count(last) != chunkSize) {
+			segment(chunk, chunkSize);
+		}
+		chunk[chunkSize++] = param;
+		size++;
+	}
+
+	private void segment(String[] array, int offset) {
+		if (segments == arrays.length) {
+			arrays = Arrays.copyOf(arrays, segments * 2);
+			offsets = Arrays.copyOf(offsets, segments * 2);
+			starts = Arrays.copyOf(starts, segments * 2);
+		}
+		arrays[segments] = array;
+		offsets[segments] = offset;
+		starts[segments] = size;
+		segments++;
+	}
+
+	private int count(int segment) {
+		return (segment + 1 < segments ? starts[segment + 1] : size) - starts[segment];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+
+		int low = 0;
+		int high = segments - 1;
+		while (low < high) { // the last segment starting at or before index
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return arrays[low][offsets[low] + index - starts[low]];
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int segment;
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public String next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+
+				if (segment + 1 < segments && starts[segment + 1] == index) {
+					segment++;
+				}
+				return arrays[segment][offsets[segment] + index++ - starts[segment]];
+			}
+		};
+	}
+
+	@Override
+	public Object[] toArray() {
+		return toArray(new String[size]);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T[] toArray(T[] a) {
+		if (a.length < size) {
+			a = Arrays.copyOf(a, size);
+		}
+		for (int k = 0; k < segments; k++) {
+			System.arraycopy(arrays[k], offsets[k], a, starts[k], count(k));
+		}
+		if (a.length > size) {
+			a[size] = null;
+		}
+		return a;
+	}
+
+	/**
+	 * @return the parameters as an array, created once and shared by the
+	 *         callers, as with the result of {@link OptionParser#parse(String[])}
+	 */
+	String[] array() {
+		if (array == null) {
+			array = toArray(new String[size]);
+		}
+		return array;
+	}
+
+	/**
+	 * @return a map view with each Params as an array, which is created on
+	 *         demand when the value is read, and a new value is put back as
+	 *         the Params of the array, so the view can be modified as a
+	 *         LinkedHashMap
+	 */
+	static Map<Object, String[]> arrays(Map<Object, Params> map) {
+		return new AbstractMap<Object, String[]>() {
+			@Override
+			public String[] get(Object key) {
+				Params params = map.get(key);
+				return params == null ? null : params.array();
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return map.containsKey(key);
+			}
+
+			@Override
+			public String[] put(Object key, String[] value) {
+				Params previous = map.put(key, value == null ? null : of(value));
+				return previous == null ? null : previous.array();
+			}
+
+			@Override
+			public String[] remove(Object key) {
+				Params previous = map.remove(key);
+				return previous == null ? null : previous.array();
+			}
+
+			@Override
+			public void clear() {
+				map.clear();
+			}
+
+			@Override
+			public int size() {
+				return map.size();
+			}
+
+			@Override
+			public Set<Object> keySet() {
+				return map.keySet();
+			}
+
+			@Override
+			public Set<Entry<Object, String[]>> entrySet() {
+				return new AbstractSet<Entry<Object, String[]>>() {
+					@Override
+					public Iterator<Entry<Object, String[]>> iterator() {
+						Iterator<Entry<Object, Params>> it = map.entrySet().iterator();
+						return new Iterator<Entry<Object, String[]>>() {
+							@Override
+							public boolean hasNext() {
+								return it.hasNext();
+							}
+
+							@Override
+							public Entry<Object, String[]> next() {
+								Entry<Object, Params> entry = it.next();
+								return new AbstractMap.SimpleEntry<Object, String[]>(entry.getKey(), entry.getValue() == null ? null : entry.getValue().array()) {
+									private static final long serialVersionUID = 1L;
+
+									@Override
+									public String[] setValue(String[] value) {
+										entry.setValue(value == null ? null : of(value));
+										return super.setValue(value);
+									}
+								};
+							}
+
+							@Override
+							public void remove() {
+								it.remove();
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return map.size();
+					}
+				};
+			}
+		};
+	}
+}
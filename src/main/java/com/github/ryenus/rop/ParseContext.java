@@ -0,0 +1,385 @@
+package com.github.ryenus.rop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.ryenus.rop.OptionType.*;
+
+/**
+ * The state of a single parse call, including the command being parsed and
+ * which of its options are set, so that the parser itself is never mutated
+ * during parsing.
+ */
+class ParseContext {
+	private final OptionParser parser;
+	private final boolean multi;
+	private final boolean showHelp;
+	private final List<CommandInfo> staged;
+	private String[] args;
+	private ArgIterator indexed;
+	private Params params;
+	private CommandInfo cci;
+	private Object command;
+	private long[] set; // a bitset indexed by OptionInfo.index
+	private ValueBuffer[] buffers; // of the multi-valued options, indexed by OptionInfo.index, null if none
+	private Map<String, List<String>> config; // loaded on demand
+	private int position = -1; // of the last token read
+	private List<Diagnostic> diagnostics; // null to throw at the first error
+
+	final Map<Object, Params> cpm;
+
+	/**
+	 * @param showHelp whether to show the help at {@literal "--help"}, or
+	 *            just stop parsing
+	 */
+	ParseContext(OptionParser parser, CommandInfo top, boolean multi, boolean showHelp) {
+		this.parser = parser;
+		this.multi = multi;
+		this.showHelp = showHelp;
+		this.staged = new ArrayList<>();
+		this.cpm = new LinkedHashMap<>();
+		switchTo(top);
+	}
+
+	private void switchTo(CommandInfo ci) {
+		cci = ci;
+		command = parser.instance(ci);
+		set = new long[(ci.options.size() + 63) >>> 6];
+	}
+
+	/**
+	 * Collect all the errors, and continue parsing, rather than throwing at
+	 * the first one.
+	 */
+	void collectErrors() {
+		diagnostics = new ArrayList<>();
+	}
+
+	/**
+	 * @return the errors collected, if {@link #collectErrors()}
+	 */
+	List<Diagnostic> diagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * @return false if parsing stopped at {@literal "--help"}
+	 */
+	boolean parse(String[] args) {
+		this.args = args;
+		return parse(parser.iterator(args));
+	}
+
+	/**
+	 * @return false if parsing stopped at {@literal "--help"}
+	 */
+	boolean parse(CharSequence line) {
+		this.args = new String[0];
+		return parse(parser.iterator(new ShellTokenizer(line)));
+	}
+
+	private boolean parse(ArgIterator tokens) {
+		this.indexed = tokens;
+		this.params = new Params(args);
+		try {
+			if (!parseTokens(indexed)) {
+				return false;
+			}
+		} catch (OptParseException e) { // from the tokens, nothing more to parse
+			if (diagnostics == null) {
+				throw e;
+			}
+			diagnostics.add(new Diagnostic(-1, null, null, e.getMessage(), e.getCause()));
+		}
+
+		stage();
+		return true;
+	}
+
+	private boolean parseTokens(Iterator<String> tokens) {
+		while (tokens.hasNext()) {
+			String arg = next(tokens);
+
+			if ("--help".equals(arg)) {
+				if (showHelp) {
+					parser.showHelp();
+				}
+				return false;
+			}
+
+			CommandInfo ci = parser.command(arg);
+			if (ci != null) {
+				if (ci == cci || staged.contains(ci) || (!multi && !staged.isEmpty())) {
+					param(arg);
+				} else {
+					stage();
+					switchTo(ci);
+				}
+
+				continue;
+			}
+
+			if ("--".equals(arg)) { // treat everything else as parameters
+				while (tokens.hasNext()) {
+					param(next(tokens));
+				}
+			} else if (arg.startsWith(LONG.prefix)) { // --opt, --opt=value
+				int eq = arg.indexOf('=', LONG.prefix.length());
+				int end = eq < 0 ? arg.length() : eq;
+				if (end == LONG.prefix.length()) { // no name to match, not even as a prefix
+					error(arg, LONG.prefix, String.format("Malformed option '%s'", arg), null);
+					continue;
+				}
+				OptionInfo optionInfo = cci.index.find(arg, LONG.prefix.length(), end);
+				if (optionInfo == null) {
+					String name = arg.substring(LONG.prefix.length(), end);
+					List<String> candidates = cci.index.candidates(arg, LONG.prefix.length(), end);
+					error(arg, arg.substring(0, end), candidates.isEmpty() ? String.format("Unknown option '%s'", name)
+						: String.format("Ambiguous option '%s', it could be any of %s", name, candidates), null);
+					continue;
+				}
+				parseOpt(optionInfo, LONG, arg, LONG.prefix.length(), end, eq < 0 ? null : arg.substring(eq + 1), tokens);
+			} else if (arg.length() > 1 && (arg.charAt(0) == '-' || arg.charAt(0) == '+')) {
+				parseShort(arg, tokens, OptionType.of(arg.charAt(0)));
+			} else { // a leading backslash makes a param of what looks like an option
+				param(arg.startsWith("\\") ? arg.substring(1) : arg);
+			}
+		}
+		return true;
+	}
+
+	private String next(Iterator<String> tokens) {
+		String token = tokens.next();
+		position++;
+		return token;
+	}
+
+	/**
+	 * Report an error, which is thrown, unless collected to continue parsing.
+	 *
+	 * @param token the token with the error, or null if not about a token
+	 */
+	private void error(String token, String option, String message, Throwable cause) {
+		if (diagnostics == null) {
+			throw new OptParseException(message, cause);
+		}
+		diagnostics.add(new Diagnostic(token == null ? -1 : position, token, option, message, cause));
+	}
+
+	private void stage() {
+		for (OptionInfo oi : cci.sourced) {
+			if ((set[oi.index >>> 6] & 1L << oi.index) == 0) {
+				setFromSources(oi);
+			}
+		}
+
+		if (buffers != null) { // assign the values collected of the multi-valued options
+			for (int i = 0; i < buffers.length; i++) {
+				if (buffers[i] != null) {
+					set(cci.options.get(i).setter, buffers[i].value(), null);
+				}
+			}
+			buffers = null;
+		}
+
+		staged.add(cci);
+		cpm.put(command, params);
+		params = new Params(args);
+		long[] required = cci.required;
+		for (int w = 0; w < required.length; w++) {
+			for (long missing = required[w] & ~set[w]; missing != 0; missing &= missing - 1) {
+				OptionInfo oi = cci.options.get((w << 6) + Long.numberOfTrailingZeros(missing));
+				error(null, oi.anno.opt()[0], String.format("Required option not found for field %s", oi), null);
+			}
+		}
+	}
+
+	/**
+	 * Set an option not on the command line from its environment variable, or
+	 * else its config key.
+	 */
+	private void setFromSources(OptionInfo oi) {
+		String env = oi.anno.env();
+		String key = oi.anno.config();
+		List<String> values = null;
+		String source = null;
+		if (!env.isEmpty()) {
+			String value = Daemon.env().get(env);
+			if (value != null) {
+				values = Collections.singletonList(value);
+				source = String.format("environment variable '%s'", env);
+			}
+		}
+
+		if (values == null && !key.isEmpty() && parser.configFile() != null) {
+			if (config == null) {
+				config = ConfigFile.load(parser.configFile());
+			}
+			values = config.get(key);
+			source = String.format("config key '%s'", key);
+		}
+
+		if (values == null) {
+			return;
+		}
+
+		for (String value : values) {
+			try {
+				if (oi.multiValued() && !oi.anno.count()) {
+					String from = source;
+					buffer(oi).addAll(value, oi.anno.split(), (part, e) -> unableToParse(oi, part, from, e));
+				} else if (oi.anno.secret()) {
+					oi.setter.set(command, value.toCharArray());
+				} else if (oi.type == boolean.class || oi.type == Boolean.class) {
+					oi.setter.set(command, Converters.bool(value));
+				} else if (oi.anno.count()) {
+					oi.setter.set(command, (int) OptUtils.decode(value, 0, Integer.MAX_VALUE));
+				} else {
+					oi.setter.set(command, parser.converter(oi).convert(value));
+				}
+			} catch (Exception e) {
+				unableToParse(oi, value, source, e);
+			}
+		}
+		set[oi.index >>> 6] |= 1L << oi.index;
+	}
+
+	private void unableToParse(OptionInfo oi, String value, String source, Exception e) {
+		error(null, oi.anno.opt()[0],
+			"Unable to parse '" + value + "' from " + source + " for option '" + oi.fieldName() + "' (" + oi.type.getName() + ")", e);
+	}
+
+	private void param(String arg) {
+		int i = indexed.index();
+		if (i >= 0 && args[i] == arg) { // as is, no copy
+			params.appendArg(i);
+		} else {
+			params.append(arg);
+		}
+	}
+
+	/**
+	 * Parse a token with a single {@literal '-'} or {@literal '+'} prefix, which
+	 * is either a multi-char option like {@literal "-int"}, or a cluster of
+	 * single-char options like {@literal "-xvf"}, where the last option taking an
+	 * argument may have it attached, like {@literal "-ovalue"}.
+	 */
+	private void parseShort(String arg, Iterator<String> liter, OptionType optionType) {
+		int len = arg.length();
+		if (len > 2) {
+			OptionInfo optionInfo = cci.index.exact(arg, 1, len);
+			if (optionInfo != null) {
+				parseOpt(optionInfo, optionType, arg, 1, len, null, liter);
+				return;
+			}
+		}
+
+		OptionInfo[] shorts = cci.shorts;
+		for (int i = 1; i < len; i++) {
+			char c = arg.charAt(i);
+			OptionInfo optionInfo = c < shorts.length ? shorts[c] : cci.index.exact(arg, i, i + 1);
+			if (optionInfo == null) {
+				error(arg, optionType.prefix + c, String.format("Unknown option '%s'", c), null);
+				continue;
+			}
+
+			if (optionInfo.takesArg() && i + 1 < len) {
+				parseOpt(optionInfo, optionType, arg, i, i + 1, arg.substring(i + 1), liter);
+				return;
+			}
+			parseOpt(optionInfo, optionType, arg, i, i + 1, null, liter);
+		}
+	}
+
+	/**
+	 * @param token the command line token, with the option key at [from, to)
+	 * @param value the argument attached to the token, if any
+	 */
+	private void parseOpt(OptionInfo optionInfo, OptionType optionType, String token, int from, int to, String value, Iterator<String> liter) {
+		if (value != null && !optionInfo.takesArg()) {
+			String option = key(optionType, token, from, to);
+			error(token, option, String.format("Option '%s' doesn't allow an argument", option), null);
+		}
+
+		Class<?> fieldType = optionInfo.type;
+		OptionInfo.Setter setter = optionInfo.setter;
+
+		if (optionInfo.anno.secret()) {
+			set(setter, OptUtils.readSecret(optionInfo.anno.prompt()), token);
+		} else if (fieldType == boolean.class) {
+			setter.setBoolean(command, optionType != REVERSE);
+		} else if (fieldType == Boolean.class) {
+			set(setter, optionType != REVERSE, token);
+		} else if (optionInfo.anno.count()) {
+			((ValueBuffer.Count) buffer(optionInfo)).add(token, from, to);
+		} else {
+			int arity = optionInfo.anno.arity();
+			for (int n = 0; n < arity; n++, value = null) { // only the first argument can be attached
+				if (value == null && !liter.hasNext()) {
+					String option = key(optionType, token, from, to);
+					error(token, option, arity == 1 ? String.format("Argument missing for option '%s'", option)
+						: String.format("Argument missing for option '%s', which takes %d", option, arity), null);
+					return;
+				}
+
+				String rawValue = value != null ? value : next(liter);
+				String errorToken = value != null ? token : rawValue;
+				if (optionInfo.multiValued()) {
+					buffer(optionInfo).addAll(rawValue, optionInfo.anno.split(),
+						(part, e) -> unableToParse(optionInfo, optionType, token, from, to, part, errorToken, e));
+					continue;
+				}
+
+				ValueConverter<?> converter = parser.converter(optionInfo);
+				try {
+					if (converter == Converters.INT) { // primitives specialized to avoid boxing
+						setter.setInt(command, (int) OptUtils.decode(rawValue, Integer.MIN_VALUE, Integer.MAX_VALUE));
+					} else if (converter == Converters.LONG) {
+						setter.setLong(command, OptUtils.decode(rawValue, Long.MIN_VALUE, Long.MAX_VALUE));
+					} else if (converter == Converters.DOUBLE) {
+						setter.setDouble(command, Double.parseDouble(rawValue));
+					} else {
+						setter.set(command, converter.convert(rawValue));
+					}
+				} catch (Exception e) {
+					unableToParse(optionInfo, optionType, token, from, to, rawValue, errorToken, e);
+				}
+			}
+		}
+
+		set[optionInfo.index >>> 6] |= 1L << optionInfo.index;
+	}
+
+	private ValueBuffer buffer(OptionInfo optionInfo) {
+		if (buffers == null) {
+			buffers = new ValueBuffer[cci.options.size()];
+		}
+
+		ValueBuffer buffer = buffers[optionInfo.index];
+		if (buffer == null) {
+			buffer = buffers[optionInfo.index] = ValueBuffer.of(optionInfo, parser.converter(optionInfo));
+		}
+		return buffer;
+	}
+
+	private void unableToParse(OptionInfo optionInfo, OptionType optionType, String token, int from, int to, String value, String errorToken, Exception e) {
+		error(errorToken, key(optionType, token, from, to),
+			"Unable to parse '" + value + "' for option '" + optionInfo.fieldName() + "' (" + optionInfo.type.getName() + ")", e);
+	}
+
+	private static String key(OptionType optionType, String token, int from, int to) {
+		return optionType.prefix + token.substring(from, to);
+	}
+
+	private void set(OptionInfo.Setter setter, Object value, String token) {
+		try {
+			setter.set(command, value);
+		} catch (IllegalArgumentException | ClassCastException e) {
+			error(token, null, e.toString(), e);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.ryenus.rop;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of parsing one command line with
+ * {@link OptionParser#check(String[], boolean)} or
+ * {@link OptionParser#parseAll(Iterable, boolean)}, either the parsed
+ * commands, or all the errors found.
+ */
+public final class ParseResult {
+	private final String[] args;
+	private final Map<Object, String[]> commands;
+	private final OptParseException error;
+	private final List<Diagnostic> diagnostics;
+	private final boolean help;
+
+	ParseResult(String[] args, Map<Object, String[]> commands, boolean help) {
+		this.args = args;
+		this.commands = commands;
+		this.error = null;
+		this.diagnostics = Collections.emptyList();
+		this.help = help;
+	}
+
+	ParseResult(String[] args, OptParseException error, List<Diagnostic> diagnostics) {
+		this.args = args;
+		this.commands = null;
+		this.error = error;
+		this.diagnostics = Collections.unmodifiableList(diagnostics);
+		this.help = false;
+	}
+
+	/**
+	 * @return the command line args
+	 */
+	public String[] args() {
+		return args;
+	}
+
+	/**
+	 * @return true if parsed without error
+	 */
+	public boolean ok() {
+		return error == null;
+	}
+
+	/**
+	 * @return the first error, with the number of the others in the message,
+	 *         or null if parsed without error
+	 */
+	public OptParseException error() {
+		return error;
+	}
+
+	/**
+	 * @return all the errors found, in the order of the args, with the missing
+	 *         required options of each command after its args, or empty if
+	 *         parsed without error
+	 */
+	public List<Diagnostic> diagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * @return true if parsing stopped at {@literal "--help"}
+	 */
+	public boolean help() {
+		return help;
+	}
+
+	/**
+	 * @return the parsed commands and their params, as returned by
+	 *         {@link OptionParser#parse(String[], boolean)}, or null on error
+	 */
+	public Map<Object, String[]> commands() {
+		return commands;
+	}
+
+	/**
+	 * Get the instance of the given Command class, with the options of this
+	 * command line.
+	 *
+	 * @param klass a Command class
+	 * @param <T> the type of the Command class
+	 *
+	 * @return the instance, or null if the command is not on the command
+	 *         line, or on error
+	 */
+	public <T> T get(Class<T> klass) {
+		if (commands != null) {
+			for (Object command : commands.keySet()) {
+				if (command.getClass() == klass) {
+					return klass.cast(command);
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return String.join(" ", args) + (error == null ? "" : ": " + error.getMessage());
+	}
+}
@@ -0,0 +1,180 @@
+package com.github.ryenus.rop;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Run the commands of an {@link OptionParser} interactively, one command line
+ * at a time, in a long-lived JVM, so that each line costs only the parsing and
+ * the {@code run} methods.
+ *
+ * <pre>
+ * new Repl(new OptionParser(FooCommand.class, BarCommand.class)).prompt("foo&gt; ").run();
+ * </pre>
+ *
+ * <p>
+ * The command instances are reused for all the lines. The option values of
+ * each line are reset to the defaults before parsing the next line, where the
+ * defaults are the option values before the instance was first used, so
+ * options never leak from one line to another. Other fields, if any, are left
+ * as is.
+ * </p>
+ *
+ * <p>
+ * Each line is split as with {@link OptionParser#parse(CharSequence)}.
+ * {@literal "--help"} shows the help and continues with the next line, while
+ * an error is reported without ending the loop. Besides the commands, the
+ * built-in commands {@literal "history"} lists the lines entered, and
+ * {@literal "exit"} or {@literal "quit"} ends the loop, as with the end of
+ * the input, unless a command is registered with the same name, which wins.
+ * </p>
+ *
+ * <p>
+ * A Repl, like the parser, is not thread-safe.
+ * </p>
+ */
+public class Repl {
+	private final OptionParser parser;
+	private final Deque<String> history;
+	private String prompt = "> ";
+	private int historySize = 500;
+	private boolean multi;
+
+	/**
+	 * @param parser the parser with all the commands registered, which is
+	 *            then owned by this Repl
+	 */
+	public Repl(OptionParser parser) {
+		this.parser = Objects.requireNonNull(parser);
+		this.history = new ArrayDeque<>();
+		parser.trackDefaults();
+	}
+
+	/**
+	 * @param prompt the prompt shown before reading each line
+	 * @return this Repl to support chained invocations
+	 */
+	public Repl prompt(String prompt) {
+		this.prompt = Objects.requireNonNull(prompt);
+		return this;
+	}
+
+	/**
+	 * @param historySize the max number of lines kept in the history
+	 * @return this Repl to support chained invocations
+	 */
+	public Repl historySize(int historySize) {
+		if (historySize < 0) {
+			throw new IllegalArgumentException("Negative history size: " + historySize);
+		}
+
+		this.historySize = historySize;
+		while (history.size() > historySize) {
+			history.removeFirst();
+		}
+		return this;
+	}
+
+	/**
+	 * @param multi whether to support multiple sub-commands per line
+	 * @return this Repl to support chained invocations
+	 *
+	 * @see OptionParser#parse(CharSequence, boolean)
+	 */
+	public Repl multi(boolean multi) {
+		this.multi = multi;
+		return this;
+	}
+
+	/**
+	 * @return the lines entered, the oldest first
+	 */
+	public List<String> history() {
+		return new ArrayList<>(history);
+	}
+
+	/**
+	 * Reset the options to the defaults, then parse the line, and run the
+	 * parsed commands.
+	 *
+	 * @param line a command line
+	 * @return the result of {@link OptionParser#parse(CharSequence, boolean)}
+	 */
+	public Map<Object, String[]> exec(String line) {
+		if (historySize > 0) {
+			if (history.size() == historySize) {
+				history.removeFirst();
+			}
+			history.addLast(line);
+		}
+
+		parser.resetDefaults();
+		return parser.parse(line, multi);
+	}
+
+	/**
+	 * Read and run the lines from {@code System.in}, with the prompt, the help
+	 * and errors written to {@code System.out}.
+	 */
+	public void run() {
+		run(new BufferedReader(new InputStreamReader(System.in)), System.out);
+	}
+
+	/**
+	 * Read and run the lines from the input, till the end of it, or the
+	 * {@literal "exit"} command.
+	 *
+	 * @param in the input of the command lines
+	 * @param out the output of the prompt, the help, and the errors
+	 */
+	public void run(BufferedReader in, PrintStream out) {
+		parser.output(out);
+		try {
+			while (true) {
+				out.print(prompt);
+				out.flush();
+
+				String line = in.readLine();
+				if (line == null) {
+					break;
+				}
+
+				String trimmed = line.trim();
+				if (trimmed.isEmpty()) {
+					continue;
+				} else if (("exit".equals(trimmed) || "quit".equals(trimmed)) && !registered(trimmed)) {
+					break;
+				} else if ("history".equals(trimmed) && !registered(trimmed)) {
+					int i = 1;
+					for (String entry : history) {
+						out.println(String.format("%5d  %s", i++, entry));
+					}
+					continue;
+				}
+
+				try {
+					exec(line);
+				} catch (OptParseException e) {
+					out.println("error: " + e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			parser.output(null);
+		}
+	}
+
+	private boolean registered(String name) {
+		return parser.commandNames().contains(name);
+	}
+}
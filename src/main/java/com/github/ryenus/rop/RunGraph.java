@@ -0,0 +1,316 @@
+package com.github.ryenus.rop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The order in which the commands parsed in multi mode are run: the top
+ * command first, then each sub-command after the ones named by its
+ * {@link OptionParser.Command#after()}, if they're also on the command line,
+ * otherwise in the command line order.
+ *
+ * <p>
+ * Run on an {@link Executor}, each command starts as soon as the ones it runs
+ * after have completed, so independent commands run concurrently. The output
+ * of each command to {@link OptionParser#stdout()} and
+ * {@link OptionParser#stderr()}, and to {@code System.out} and
+ * {@code System.err} if routed, is buffered, and written in the command line
+ * order, so it's never interleaved and always the same as if run
+ * sequentially. A failed
+ * command doesn't stop the independent ones, but skips the ones after it,
+ * and all the failures are thrown together at the end.
+ * </p>
+ */
+final class RunGraph {
+	private final OptionParser parser;
+	private final Object[] commands; // in the command line order
+	private final Params[] params;
+	private final String[] names;
+	private final int[][] after; // per command, the indexes of the commands to run after
+	private final int[] order; // the indexes in a valid run order
+
+	RunGraph(OptionParser parser, Map<Object, Params> cpm) {
+		int n = cpm.size();
+		this.parser = parser;
+		this.commands = new Object[n];
+		this.params = new Params[n];
+		this.names = new String[n];
+		this.after = new int[n][];
+
+		Map<String, Integer> indexes = new HashMap<>();
+		CommandInfo[] infos = new CommandInfo[n];
+		int i = 0;
+		for (Map.Entry<Object, Params> entry : cpm.entrySet()) {
+			commands[i] = entry.getKey();
+			params[i] = entry.getValue();
+			infos[i] = CommandInfo.of(commands[i].getClass());
+			names[i] = infos[i].anno.name();
+			indexes.put(names[i], i);
+			i++;
+		}
+
+		after[0] = new int[0]; // the top command
+		for (i = 1; i < n; i++) {
+			String[] declared = infos[i].anno.after();
+			int[] deps = new int[declared.length + 1];
+			int count = 0;
+			deps[count++] = 0; // always after the top command
+			for (String name : declared) {
+				Integer j = indexes.get(name);
+				if (j != null && j != 0 && j != i) {
+					deps[count++] = j;
+				}
+			}
+			after[i] = Arrays.copyOf(deps, count);
+			Arrays.sort(after[i]); // visited in the command line order
+		}
+
+		this.order = sort();
+	}
+
+	/**
+	 * Sort the commands topologically, keeping the command line order where
+	 * there's no dependency.
+	 */
+	private int[] sort() {
+		int n = commands.length;
+		int[] sorted = new int[n];
+		int[] state = new int[n]; // 0: not visited, 1: visiting, 2: sorted
+		int[] count = new int[1];
+		for (int i = 0; i < n; i++) {
+			visit(i, state, sorted, count, new ArrayList<>());
+		}
+		return sorted;
+	}
+
+	private void visit(int i, int[] state, int[] sorted, int[] count, List<String> path) {
+		if (state[i] == 2) {
+			return;
+		}
+
+		path.add(names[i]);
+		if (state[i] == 1) {
+			List<String> cycle = path.subList(path.indexOf(names[i]), path.size());
+			throw new OptParseException(String.format("Circular dependency between commands: %s", String.join(" -> ", cycle)));
+		}
+
+		state[i] = 1;
+		for (int j : after[i]) {
+			visit(j, state, sorted, count, path);
+		}
+		state[i] = 2;
+		sorted[count[0]++] = i;
+		path.remove(path.size() - 1);
+	}
+
+	/**
+	 * Run the commands one by one, stopping at the first failure.
+	 *
+	 * @return the last non-null result of the run methods, in the command line
+	 *         order
+	 */
+	Object run() {
+		Object[] results = new Object[commands.length];
+		for (int i : order) {
+			results[i] = CommandRun.call(parser, commands[i], params[i]);
+		}
+		return last(results);
+	}
+
+	/**
+	 * Run the commands concurrently on the executor, as their dependencies
+	 * allow, and wait for them.
+	 *
+	 * @return the last non-null result of the run methods, in the command line
+	 *         order
+	 */
+	Object run(Executor executor) {
+		return last(CommandRun.join(start(executor)));
+	}
+
+	/**
+	 * Start the commands concurrently on the executor, as their dependencies
+	 * allow.
+	 *
+	 * @return the future of the results of the run methods, in the command line
+	 *         order, which interrupts the runs if cancelled
+	 */
+	CompletableFuture<Object[]> start(Executor executor) {
+		int n = commands.length;
+		Object[] results = new Object[n];
+		Throwable[] failures = new Throwable[n];
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[n];
+		CompletableFuture<?>[] written = new CompletableFuture<?>[n];
+		AtomicReferenceArray<CompletableFuture<?>> runs = new AtomicReferenceArray<>(n);
+		CompletableFuture<Object[]> all = new CompletableFuture<>();
+		Output output = new Output(n, Invocation.stdout(), Invocation.stderr());
+
+		all.whenComplete((r, e) -> {
+			if (all.isCancelled()) {
+				for (int i = 0; i < n; i++) {
+					futures[i].cancel(true); // not started yet
+					CompletableFuture<?> run = runs.get(i);
+					if (run != null) {
+						run.cancel(true);
+					}
+				}
+			}
+		});
+
+		boolean route = parser.routesSystemOutput();
+		if (route) {
+			Invocation.route();
+		}
+		for (int i : order) {
+			Invocation invocation = Invocation.redirect(output.out[i], output.err[i]);
+			CompletableFuture<?>[] deps = new CompletableFuture<?>[after[i].length];
+			for (int k = 0; k < deps.length; k++) {
+				deps[k] = futures[after[i][k]];
+			}
+
+			CompletableFuture<?> ready = deps.length == 0 ? CompletableFuture.completedFuture(null) : CompletableFuture.allOf(deps);
+			futures[i] = ready.thenCompose(v -> {
+				CompletableFuture<Object> run = CommandRun.start(parser, commands[i], params[i], invocation, executor);
+				runs.set(i, run);
+				if (all.isCancelled()) {
+					run.cancel(true);
+				}
+				return run.whenComplete((r, e) -> {
+					if (e == null) {
+						results[i] = r;
+					} else {
+						failures[i] = CommandRun.failure(e);
+					}
+				});
+			});
+			written[i] = futures[i].whenComplete((r, e) -> output.done(i));
+		}
+
+		CompletableFuture.allOf(written).whenComplete((r, e) -> {
+			if (route) {
+				Invocation.unroute();
+			}
+			Throwable failure = failure(failures, futures);
+			if (failure != null) {
+				all.completeExceptionally(failure);
+			} else {
+				all.complete(results);
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * @return the failures of the commands thrown together, or the only one
+	 *         as is if an OptParseException or an Error, or null if none
+	 */
+	private Throwable failure(Throwable[] failures, CompletableFuture<?>[] futures) {
+		List<String> failed = new ArrayList<>();
+		List<String> skipped = new ArrayList<>();
+		List<Throwable> causes = new ArrayList<>();
+		for (int i = 0; i < failures.length; i++) {
+			if (failures[i] != null) {
+				failed.add(names[i]);
+				causes.add(failures[i]);
+			} else if (futures[i].isCompletedExceptionally()) {
+				skipped.add(names[i]);
+			}
+		}
+
+		if (causes.isEmpty()) {
+			return null;
+		} else if (causes.size() == 1) {
+			return causes.get(0); // as if run sequentially
+		}
+
+		String message = String.format("Commands failed: %s", String.join(", ", failed));
+		if (!skipped.isEmpty()) {
+			message += String.format(", skipped: %s", String.join(", ", skipped));
+		}
+		OptParseException e = new OptParseException(message, causes.get(0));
+		for (Throwable cause : causes.subList(1, causes.size())) {
+			e.addSuppressed(cause);
+		}
+		return e;
+	}
+
+	private static Object last(Object[] results) {
+		for (int i = results.length - 1; i >= 0; i--) {
+			if (results[i] != null) {
+				return results[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return an executor with a new virtual thread per command on Java 21+,
+	 *         otherwise the common {@link ForkJoinPool}
+	 */
+	static Executor defaultExecutor() {
+		return DefaultExecutor.INSTANCE;
+	}
+
+	private static final class DefaultExecutor {
+		static final Executor INSTANCE = create();
+
+		private static Executor create() {
+			try {
+				return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException | RuntimeException e) { // before Java 21
+				return ForkJoinPool.commonPool();
+			}
+		}
+	}
+
+	/**
+	 * The buffered output of the commands, written in the command line order
+	 * as soon as all the commands before have completed.
+	 */
+	private static final class Output {
+		final ByteArrayOutputStream[] out;
+		final ByteArrayOutputStream[] err;
+		private final boolean[] done;
+		private final OutputStream stdout;
+		private final OutputStream stderr;
+		private int next;
+
+		Output(int n, OutputStream stdout, OutputStream stderr) {
+			this.out = new ByteArrayOutputStream[n];
+			this.err = new ByteArrayOutputStream[n];
+			this.done = new boolean[n];
+			this.stdout = stdout;
+			this.stderr = stderr;
+			for (int i = 0; i < n; i++) {
+				out[i] = new ByteArrayOutputStream();
+				err[i] = new ByteArrayOutputStream();
+			}
+		}
+
+		synchronized void done(int i) {
+			done[i] = true;
+			for (; next < done.length && done[next]; next++) {
+				try {
+					out[next].writeTo(stdout);
+					stdout.flush();
+					err[next].writeTo(stderr);
+					stderr.flush();
+				} catch (IOException e) { // nowhere to write, as with PrintStream
+				}
+				out[next] = null;
+				err[next] = null;
+			}
+		}
+	}
+}
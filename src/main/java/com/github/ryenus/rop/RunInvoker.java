@@ -0,0 +1,151 @@
+package com.github.ryenus.rop;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Resolve the {@code run} method of a Command class, once per class, into a
+ * method handle of the uniform type {@code (Object, OptionParser, Params)Object}.
+ */
+final class RunInvoker {
+	private RunInvoker() {}
+
+	static final MethodType TYPE = MethodType.methodType(Object.class, Object.class, OptionParser.class, Params.class);
+
+	/**
+	 * The supported types of the parameters, in the order of preference.
+	 */
+	private static final List<Class<?>> PARAMS_TYPES = Arrays.asList(String[].class, List.class, Iterable.class, Stream.class);
+
+	/**
+	 * The supported shapes of {@code run}, in the order of preference, where
+	 * {@code Params} stands for any of {@link #PARAMS_TYPES}.
+	 */
+	private static final List<List<Class<?>>> SHAPES = Arrays.asList(
+		Arrays.asList(OptionParser.class, Params.class),
+		Arrays.asList(Params.class, OptionParser.class),
+		Arrays.asList(Params.class),
+		Arrays.asList(OptionParser.class),
+		Arrays.asList());
+
+	private static final MethodHandle NO_RUN = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, TYPE.parameterList());
+	private static final MethodHandle TO_ARRAY;
+	private static final MethodHandle TO_STREAM;
+
+	static {
+		try {
+			TO_ARRAY = MethodHandles.lookup().findVirtual(Params.class, "array", MethodType.methodType(String[].class));
+			TO_STREAM = MethodHandles.lookup().findVirtual(Params.class, "stream", MethodType.methodType(Stream.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static final ClassValue<MethodHandle> CACHE = new ClassValue<MethodHandle>() {
+		@Override
+		protected MethodHandle computeValue(Class<?> klass) {
+			return resolve(klass);
+		}
+	};
+
+	static MethodHandle of(Class<?> klass) {
+		return CACHE.get(klass);
+	}
+
+	/**
+	 * @return the rank of the parameter types, the lower the more preferred,
+	 *         or -1 if not supported
+	 */
+	private static int rank(Class<?>[] paramTypes) {
+		for (int shape = 0; shape < SHAPES.size(); shape++) {
+			List<Class<?>> types = SHAPES.get(shape);
+			if (types.size() != paramTypes.length) {
+				continue;
+			}
+
+			int paramsType = 0;
+			boolean matched = true;
+			for (int i = 0; i < paramTypes.length && matched; i++) {
+				if (types.get(i) == Params.class) {
+					paramsType = PARAMS_TYPES.indexOf(paramTypes[i]);
+					matched = paramsType >= 0;
+				} else {
+					matched = types.get(i) == paramTypes[i];
+				}
+			}
+
+			if (matched) {
+				return shape * PARAMS_TYPES.size() + paramsType;
+			}
+		}
+		return -1;
+	}
+
+	private static MethodHandle resolve(Class<?> klass) {
+		Method run = null;
+		int rank = Integer.MAX_VALUE;
+		for (Method method : klass.getDeclaredMethods()) {
+			if ("run".equals(method.getName()) && !method.isSynthetic()) {
+				int r = rank(method.getParameterTypes());
+				if (r >= 0 && r < rank) {
+					run = method;
+					rank = r;
+				}
+			}
+		}
+
+		if (run == null) {
+			return NO_RUN;
+		}
+
+		MethodHandle mh;
+		try {
+			run.setAccessible(true);
+			mh = MethodHandles.lookup().unreflect(run);
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new OptParseException(String.format("Unable to access %s", run), e);
+		}
+
+		if (Modifier.isStatic(run.getModifiers())) {
+			mh = MethodHandles.dropArguments(mh, 0, klass);
+		}
+
+		int shape = rank / PARAMS_TYPES.size();
+		if (shape <= 2) { // take the parameters as Params
+			int pos = shape == 0 ? 2 : 1;
+			Class<?> paramsType = mh.type().parameterType(pos);
+			if (paramsType == String[].class) {
+				mh = MethodHandles.filterArguments(mh, pos, TO_ARRAY);
+			} else if (paramsType == Stream.class) {
+				mh = MethodHandles.filterArguments(mh, pos, TO_STREAM);
+			} else { // List, Iterable
+				mh = mh.asType(mh.type().changeParameterType(pos, Params.class));
+			}
+		}
+
+		MethodType target = MethodType.methodType(mh.type().returnType(), klass, OptionParser.class, Params.class);
+		switch (shape) {
+		case 0: // run(OptionParser, String[])
+			break;
+		case 1: // run(String[], OptionParser)
+			mh = MethodHandles.permuteArguments(mh, target, 0, 2, 1);
+			break;
+		case 2: // run(String[])
+			mh = MethodHandles.dropArguments(mh, 1, OptionParser.class);
+			break;
+		case 3: // run(OptionParser)
+			mh = MethodHandles.dropArguments(mh, 2, Params.class);
+			break;
+		default: // run()
+			mh = MethodHandles.dropArguments(mh, 1, OptionParser.class, Params.class);
+		}
+
+		return mh.asType(TYPE); // void returns null
+	}
+}
@@ -0,0 +1,172 @@
+package com.github.ryenus.rop;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Split a command line into args lazily, one at a time, as with the POSIX
+ * shell, but without any expansion or operator, so {@literal $}, {@literal *},
+ * {@literal |}, etc. are taken literally.
+ *
+ * <ul>
+ * <li>args are separated by spaces, tabs or newlines</li>
+ * <li>within single quotes, all characters are literal</li>
+ * <li>within double quotes, a backslash only escapes {@literal $},
+ * {@literal `}, {@literal "}, {@literal \} or a newline</li>
+ * <li>outside of quotes, a backslash escapes any character</li>
+ * <li>a backslash-newline is a line continuation, which is removed</li>
+ * <li>a {@literal #} at the start of an arg begins a comment till the end of
+ * the line</li>
+ * </ul>
+ *
+ * <p>
+ * An arg without quotes or escapes is copied from the input as is.
+ * </p>
+ */
+final class ShellTokenizer implements Iterator<String> {
+	private final CharSequence input;
+	private final int length;
+	private int pos;
+	private String next;
+	private StringBuilder sb; // only for an arg with quotes or escapes
+
+	ShellTokenizer(CharSequence input) {
+		this.input = input;
+		this.length = input.length();
+	}
+
+	/**
+	 * @return all the args of the line
+	 */
+	static String[] split(CharSequence line) {
+		List<String> args = new ArrayList<>();
+		for (ShellTokenizer tokens = new ShellTokenizer(line); tokens.hasNext();) {
+			args.add(tokens.next());
+		}
+		return args.toArray(new String[0]);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			next = scan();
+		}
+		return next != null;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		String arg = next;
+		next = null;
+		return arg;
+	}
+
+	private String scan() {
+		while (pos < length) { // skip blanks, comments and line continuations
+			char c = input.charAt(pos);
+			if (isBlank(c)) {
+				pos++;
+			} else if (c == '#') {
+				while (pos < length && input.charAt(pos) != '\n') {
+					pos++;
+				}
+			} else if (c == '\\' && pos + 1 < length && input.charAt(pos + 1) == '\n') {
+				pos += 2;
+			} else {
+				break;
+			}
+		}
+
+		if (pos == length) {
+			return null;
+		}
+
+		int start = pos;
+		while (pos < length) {
+			char c = input.charAt(pos);
+			if (isBlank(c)) {
+				return input.subSequence(start, pos).toString();
+			} else if (c == '\'' || c == '"' || c == '\\') {
+				return quoted(start);
+			}
+			pos++;
+		}
+		return input.subSequence(start, pos).toString();
+	}
+
+	/**
+	 * Continue with an arg from {@code start}, with quotes or escapes found at
+	 * the current position.
+	 */
+	private String quoted(int start) {
+		if (sb == null) {
+			sb = new StringBuilder();
+		}
+		sb.setLength(0);
+		sb.append(input, start, pos);
+
+		while (pos < length) {
+			char c = input.charAt(pos++);
+			if (isBlank(c)) {
+				break;
+			} else if (c == '\\') {
+				if (pos < length) {
+					char escaped = input.charAt(pos++);
+					if (escaped != '\n') {
+						sb.append(escaped);
+					}
+				}
+			} else if (c == '\'') {
+				int end = close('\'');
+				sb.append(input, pos, end);
+				pos = end + 1;
+			} else if (c == '"') {
+				doubleQuoted();
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private void doubleQuoted() {
+		int open = pos - 1;
+		while (pos < length) {
+			char c = input.charAt(pos++);
+			if (c == '"') {
+				return;
+			} else if (c == '\\' && pos < length && "$`\"\\\n".indexOf(input.charAt(pos)) >= 0) {
+				char escaped = input.charAt(pos++);
+				if (escaped != '\n') {
+					sb.append(escaped);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		throw unterminated('"', open);
+	}
+
+	private int close(char quote) {
+		for (int i = pos; i < length; i++) {
+			if (input.charAt(i) == quote) {
+				return i;
+			}
+		}
+		throw unterminated(quote, pos - 1);
+	}
+
+	private static OptParseException unterminated(char quote, int at) {
+		return new OptParseException(String.format("Unterminated quote %s at %d", quote, at));
+	}
+
+	private static boolean isBlank(char c) {
+		return c == ' ' || c == '\t' || c == '\n';
+	}
+}
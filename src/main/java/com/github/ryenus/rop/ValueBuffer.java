@@ -0,0 +1,231 @@
+package com.github.ryenus.rop;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Collect the values of a multi-valued option during a parse call, across all
+ * its occurrences, then make the field value of them at the end. The values
+ * of {@code int[]}, {@code long[]} and {@code double[]} fields are kept in
+ * growable primitive arrays, without boxing.
+ */
+abstract class ValueBuffer {
+	private static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 * Convert and add the value at [from, to) of the argument.
+	 */
+	abstract void add(String arg, int from, int to) throws Exception;
+
+	/**
+	 * @return the value for the option field
+	 */
+	abstract Object value();
+
+	/**
+	 * Convert and add the argument, or each part of it split by the delimiter,
+	 * which is scanned for by index rather than with a regex. The parts of
+	 * {@code int[]} and {@code long[]} options are decoded in place, without a
+	 * substring.
+	 *
+	 * @param delimiter the delimiter, or empty not to split
+	 * @param failed called with each part failed to convert, and the error
+	 */
+	final void addAll(String arg, String delimiter, BiConsumer<String, Exception> failed) {
+		int start = 0;
+		while (true) {
+			int end = delimiter.isEmpty() ? -1 : arg.indexOf(delimiter, start);
+			int stop = end < 0 ? arg.length() : end;
+			try {
+				add(arg, start, stop);
+			} catch (Exception e) {
+				failed.accept(arg.substring(start, stop), e);
+			}
+
+			if (end < 0) {
+				return;
+			}
+			start = end + delimiter.length();
+		}
+	}
+
+	/**
+	 * @param converter the converter of the elements
+	 */
+	static ValueBuffer of(OptionInfo oi, ValueConverter<?> converter) {
+		if (oi.anno.count()) {
+			return new Count();
+		} else if (OptionInfo.isMap(oi.type)) {
+			return new Entries(converter);
+		}
+
+		if (oi.type == int[].class && converter == Converters.INT) {
+			return new Ints();
+		} else if (oi.type == long[].class && converter == Converters.LONG) {
+			return new Longs();
+		} else if (oi.type == double[].class && converter == Converters.DOUBLE) {
+			return new Doubles();
+		}
+		return new Elements(oi.type, converter);
+	}
+
+	private static int grow(int length) {
+		return length == 0 ? INITIAL_CAPACITY : length + (length >> 1);
+	}
+
+	static final class Count extends ValueBuffer {
+		private int count;
+
+		@Override
+		void add(String arg, int from, int to) {
+			count++;
+		}
+
+		@Override
+		Object value() {
+			return count;
+		}
+	}
+
+	static final class Ints extends ValueBuffer {
+		private int[] values = new int[0];
+		private int size;
+
+		@Override
+		void add(String arg, int from, int to) {
+			int value = (int) OptUtils.decode(arg, from, to, Integer.MIN_VALUE, Integer.MAX_VALUE);
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = value;
+		}
+
+		@Override
+		Object value() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	static final class Longs extends ValueBuffer {
+		private long[] values = new long[0];
+		private int size;
+
+		@Override
+		void add(String arg, int from, int to) {
+			long value = OptUtils.decode(arg, from, to, Long.MIN_VALUE, Long.MAX_VALUE);
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = value;
+		}
+
+		@Override
+		Object value() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	static final class Doubles extends ValueBuffer {
+		private double[] values = new double[0];
+		private int size;
+
+		@Override
+		void add(String arg, int from, int to) {
+			double value = Double.parseDouble(arg.substring(from, to));
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(size));
+			}
+			values[size++] = value;
+		}
+
+		@Override
+		Object value() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * For the arrays of other types, including the primitive ones with a
+	 * converter added to the parser, and the List and Set fields.
+	 */
+	static final class Elements extends ValueBuffer {
+		private final Class<?> type;
+		private final ValueConverter<?> converter;
+		private final List<Object> values = new ArrayList<>();
+
+		Elements(Class<?> type, ValueConverter<?> converter) {
+			this.type = type;
+			this.converter = converter;
+		}
+
+		@Override
+		void add(String arg, int from, int to) throws Exception {
+			values.add(converter.convert(arg.substring(from, to)));
+		}
+
+		@Override
+		Object value() {
+			if (type.isArray()) {
+				Object array = Array.newInstance(type.getComponentType(), values.size());
+				for (int i = 0; i < values.size(); i++) {
+					Array.set(array, i, values.get(i));
+				}
+				return array;
+			} else if (type.isAssignableFrom(ArrayList.class)) {
+				return values;
+			}
+			return new LinkedHashSet<>(values);
+		}
+	}
+
+	/**
+	 * For the Map fields, with each value like {@literal "key=value"}, split
+	 * at the first {@literal '='}, or an empty value if none, as with the
+	 * {@literal "-Dkey"} system properties. The entries are kept in arrays, so
+	 * that the map is created with its final capacity, without rehashing.
+	 */
+	static final class Entries extends ValueBuffer {
+		private final ValueConverter<?> converter;
+		private String[] keys = new String[0];
+		private Object[] values = new Object[0];
+		private int size;
+
+		Entries(ValueConverter<?> converter) {
+			this.converter = converter;
+		}
+
+		@Override
+		void add(String arg, int from, int to) throws Exception {
+			int eq = from;
+			while (eq < to && arg.charAt(eq) != '=') {
+				eq++;
+			}
+			if (eq == from) {
+				throw new IllegalArgumentException("Key missing, expected key=value");
+			}
+
+			Object value = converter.convert(eq < to ? arg.substring(eq + 1, to) : "");
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, grow(size));
+				values = Arrays.copyOf(values, keys.length);
+			}
+			keys[size] = arg.substring(from, eq);
+			values[size++] = value;
+		}
+
+		@Override
+		Object value() {
+			Map<String, Object> map = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+			for (int i = 0; i < size; i++) {
+				map.put(keys[i], values[i]); // the last one wins for a duplicate key
+			}
+			return map;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.github.ryenus.rop;
+
+/**
+ * Convert an option argument from the command line to the value of an option
+ * field.
+ *
+ * <p>
+ * The converter of each option is the one added to the parser for its type
+ * with {@link OptionParser#converter(Class, ValueConverter)}, if any,
+ * otherwise the built-in one for:
+ * <ul>
+ * <li>{@code String}, the primitive types and their wrappers</li>
+ * <li>{@code File}, {@code Path}, {@code URI}, {@code Charset}</li>
+ * <li>{@code BigInteger}, {@code BigDecimal}</li>
+ * <li>{@code Duration}, {@code Instant}, in the ISO-8601 format</li>
+ * <li>{@code InetSocketAddress}, like {@literal "host:port"} or
+ * {@literal "[::1]:port"}</li>
+ * <li>any enum, by the constant name, also ignoring case with
+ * {@link OptionParser.Option#ignoreCase()}</li>
+ * </ul>
+ * An option of any other type fails the registration of its Command class
+ * with {@link OptParseException}.
+ *
+ * @param <T> the type of the option field
+ */
+@FunctionalInterface
+public interface ValueConverter<T> {
+
+	/**
+	 * @param value the option argument
+	 * @return the converted value
+	 * @throws Exception if the argument is invalid, which is reported as
+	 *         {@literal "Unable to parse"} the argument, with it as the cause
+	 */
+	T convert(String value) throws Exception;
+}
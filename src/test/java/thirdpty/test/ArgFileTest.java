@@ -0,0 +1,64 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.ArgFiles;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArgFileTest {
+
+	private static Path argFile(String content) throws IOException {
+		Path path = Files.createTempFile("rop", ".args");
+		path.toFile().deleteOnExit();
+		return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void quoted() throws IOException {
+		Path path = argFile("-i 1 # a comment\n\t'a b' \"c\\\"d\\te\" C:\\dir ''\n");
+		OptionParser parser = new OptionParser(Primitives.class).argFiles(ArgFiles.QUOTED);
+		Primitives p = parser.get(Primitives.class);
+
+		Map<Object, String[]> result = parser.parse(new String[] { "x", "@" + path, "-l", "2", "@@y" });
+		assertEquals(1, p.i);
+		assertEquals(2L, p.l);
+		assertArrayEquals(new String[] { "x", "a b", "c\"d\te", "C:\\dir", "", "@y" }, result.get(p));
+	}
+
+	@Test
+	public void nulDelimited() throws IOException {
+		Path path = argFile("-i\u00003\u0000a b\nc\u0000\u00e9\u0000");
+		OptionParser parser = new OptionParser(Primitives.class).argFiles(ArgFiles.NUL_DELIMITED);
+		Primitives p = parser.get(Primitives.class);
+
+		Map<Object, String[]> result = parser.parse(new String[] { "@" + path });
+		assertEquals(3, p.i);
+		assertArrayEquals(new String[] { "a b\nc", "\u00e9" }, result.get(p));
+	}
+
+	@Test
+	public void disabledByDefault() {
+		OptionParser parser = new OptionParser(Primitives.class);
+		Map<Object, String[]> result = parser.parse(new String[] { "@no-such-file" });
+		assertArrayEquals(new String[] { "@no-such-file" }, result.get(parser.get(Primitives.class)));
+	}
+
+	@Test(expected = OptParseException.class)
+	public void missingFile() {
+		new OptionParser(Primitives.class).argFiles(ArgFiles.QUOTED).parse(new String[] { "@no-such-file" });
+	}
+
+	@Test(expected = OptParseException.class)
+	public void unterminatedQuote() throws IOException {
+		Path path = argFile("'abc");
+		new OptionParser(Primitives.class).argFiles(ArgFiles.QUOTED).parse(new String[] { "@" + path });
+	}
+}
@@ -0,0 +1,181 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncRunTest {
+	static volatile CompletableFuture<String> pending;
+	static volatile CountDownLatch started;
+	static volatile CountDownLatch interrupted;
+	static volatile CountDownLatch release;
+
+	@Test
+	public void parseAsync() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			OptionParser parser = new OptionParser(Tool.class, Fetch.class, Count.class);
+			Map<Object, Object> results = parser.parseAsync("fetch -u x count a b".split(" "), true, executor).get(5, TimeUnit.SECONDS);
+			assertArrayEquals(new Object[] { null, "fetched x", 2 }, results.values().toArray());
+			assertEquals("fetched x", results.get(parser.get(Fetch.class)));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void parseWaitsForStage() {
+		OptionParser parser = new OptionParser(Tool.class, Fetch.class);
+		parser.parse("fetch -u y".split(" "));
+		assertEquals("fetched y", parser.get(Fetch.class).fetched);
+	}
+
+	@Test
+	public void invalidArgs() throws Exception {
+		CompletableFuture<Map<Object, Object>> future = new OptionParser(Tool.class).parseAsync(new String[] { "-x" }, Runnable::run);
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof OptParseException);
+			assertEquals("Unknown option 'x'", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void timeoutInterruptsRun() {
+		OptionParser parser = new OptionParser(Tool.class, Sleep.class);
+		long start = System.nanoTime();
+		try {
+			parser.parse(new String[] { "sleep" });
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Command 'sleep' timed out after 50 ms", e.getMessage());
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		assertFalse(Thread.interrupted());
+	}
+
+	@Test
+	public void timeoutWithoutInterruption() {
+		release = new CountDownLatch(1);
+		OptionParser parser = new OptionParser(Tool.class, Stubborn.class);
+		long start = System.nanoTime();
+		try {
+			parser.parse(new String[] { "stubborn" });
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Command 'stubborn' timed out after 50 ms", e.getMessage());
+		} finally {
+			release.countDown();
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	public void timeoutCancelsStage() throws Exception {
+		pending = new CompletableFuture<>();
+		OptionParser parser = new OptionParser(Tool.class, Pending.class);
+		try {
+			parser.parseAsync(new String[] { "pending" }, Runnable::run).get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("Command 'pending' timed out after 50 ms", e.getCause().getMessage());
+		}
+		assertTrue(pending.isCancelled());
+	}
+
+	@Test
+	public void cancelInterruptsRun() throws Exception {
+		started = new CountDownLatch(1);
+		interrupted = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			OptionParser parser = new OptionParser(Tool.class, Block.class);
+			CompletableFuture<Map<Object, Object>> future = parser.parseAsync(new String[] { "block" }, executor);
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			assertTrue(future.cancel(true));
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Command(name = "tool")
+	static class Tool {
+	}
+
+	@Command(name = "fetch")
+	static class Fetch {
+		@Option(opt = "-u", description = "the url")
+		String url;
+
+		volatile String fetched;
+
+		CompletableFuture<String> run() {
+			return CompletableFuture.supplyAsync(() -> {
+				fetched = "fetched " + url;
+				return fetched;
+			});
+		}
+	}
+
+	@Command(name = "count")
+	static class Count {
+		int run(String[] params) {
+			return params.length;
+		}
+	}
+
+	@Command(name = "sleep", timeout = 50)
+	static class Sleep {
+		void run() throws InterruptedException {
+			Thread.sleep(10_000);
+		}
+	}
+
+	@Command(name = "stubborn", timeout = 50)
+	static class Stubborn {
+		void run() {
+			while (true) {
+				try {
+					if (release.await(10, TimeUnit.SECONDS)) {
+						return;
+					}
+				} catch (InterruptedException e) { // ignored, as with blocking I/O
+				}
+			}
+		}
+	}
+
+	@Command(name = "pending", timeout = 50)
+	static class Pending {
+		CompletableFuture<String> run() {
+			return pending;
+		}
+	}
+
+	@Command(name = "block")
+	static class Block {
+		void run() {
+			started.countDown();
+			try {
+				Thread.sleep(10_000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+		}
+	}
+}
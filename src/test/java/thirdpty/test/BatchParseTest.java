@@ -0,0 +1,68 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.BatchResult;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.ParseResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class BatchParseTest {
+
+	@Test
+	public void parseAll() {
+		List<String[]> lines = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			lines.add(i % 100 == 99 ? new String[] { "-x" } : new String[] { "-i", String.valueOf(i), "p" + i });
+		}
+
+		OptionParser parser = new OptionParser(Primitives.class);
+		BatchResult results = parser.parseAll(lines);
+		assertEquals(10_000, results.size());
+		assertEquals(100, results.failures());
+		assertTrue(results.throughput() > 0);
+
+		for (int i = 0; i < results.size(); i++) {
+			ParseResult result = results.get(i);
+			assertSame(lines.get(i), result.args());
+			if (i % 100 == 99) {
+				assertFalse(result.ok());
+				assertEquals("Unknown option 'x'", result.error().getMessage());
+			} else {
+				assertTrue(result.ok());
+				assertEquals(i, result.get(Primitives.class).i);
+				assertArrayEquals(new String[] { "p" + i }, result.commands().get(result.get(Primitives.class)));
+			}
+		}
+		assertEquals(0, parser.get(Primitives.class).i); // untouched
+	}
+
+	@Test
+	public void noRunNorHelp() {
+		List<String[]> lines = new ArrayList<>();
+		lines.add(new String[] { "-bx" });
+		lines.add(new String[] { "--help" });
+
+		BatchResult results = new OptionParser(RunnableCommand.class).parseAll(lines);
+		RunnableCommand command = results.get(0).get(RunnableCommand.class);
+		assertTrue(command.b && command.x);
+		assertEquals(9, command.i); // not run
+		assertEquals(0, command.xc);
+		assertFalse(results.get(0).help());
+		assertTrue(results.get(1).help());
+	}
+
+	@Test
+	public void parseStream() {
+		OptionParser parser = new OptionParser(Primitives.class);
+		List<Integer> values = parser.parseAll(IntStream.range(0, 1000).mapToObj(i -> new String[] { "-i", String.valueOf(i) }))
+			.map(result -> result.get(Primitives.class).i)
+			.collect(Collectors.toList());
+		assertEquals(IntStream.range(0, 1000).boxed().collect(Collectors.toList()), values);
+	}
+}
@@ -0,0 +1,98 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.Diagnostic;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import com.github.ryenus.rop.ParseResult;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CollectErrorsTest {
+
+	@Test
+	public void collectAll() {
+		OptionParser parser = new OptionParser(RunnableCommand.class);
+		ParseResult result = parser.check("--int zz -q --boolean=1 -i".split(" "));
+		assertFalse(result.ok());
+		assertNull(result.commands());
+
+		List<Diagnostic> diagnostics = result.diagnostics();
+		assertEquals(5, diagnostics.size());
+		assertDiagnostic(diagnostics.get(0), 1, "zz", "--int");
+		assertTrue(diagnostics.get(0).message().startsWith("Unable to parse 'zz' for option"));
+		assertTrue(diagnostics.get(0).cause() instanceof NumberFormatException);
+		assertDiagnostic(diagnostics.get(1), 2, "-q", "-q");
+		assertEquals("Unknown option 'q'", diagnostics.get(1).message());
+		assertDiagnostic(diagnostics.get(2), 3, "--boolean=1", "--boolean");
+		assertEquals("Option '--boolean' doesn't allow an argument", diagnostics.get(2).message());
+		assertDiagnostic(diagnostics.get(3), 4, "-i", "-i");
+		assertEquals("Argument missing for option '-i'", diagnostics.get(3).message());
+		assertDiagnostic(diagnostics.get(4), -1, null, "-x");
+		assertTrue(diagnostics.get(4).message().startsWith("Required option not found for field"));
+
+		assertTrue(result.error().getMessage().endsWith("(and 4 more errors)"));
+		assertEquals("arg 2 '-q': Unknown option 'q'", diagnostics.get(1).toString());
+	}
+
+	@Test
+	public void ambiguousPrefix() {
+		OptionParser parser = new OptionParser(Versioned.class);
+		List<Diagnostic> diagnostics = parser.check("--ver -i zz --bogus -n 3 -i q".split(" ")).diagnostics();
+		assertEquals(4, diagnostics.size());
+		assertDiagnostic(diagnostics.get(0), 0, "--ver", "--ver");
+		assertEquals("Ambiguous option 'ver', it could be any of [--verbose, --version]", diagnostics.get(0).message());
+		assertDiagnostic(diagnostics.get(1), 2, "zz", "-i");
+		assertDiagnostic(diagnostics.get(2), 3, "--bogus", "--bogus");
+		assertEquals("Unknown option 'bogus'", diagnostics.get(2).message());
+		assertDiagnostic(diagnostics.get(3), 7, "q", "-i");
+		assertEquals(3, parser.get(Versioned.class).n);
+	}
+
+	@Test
+	public void checkWithoutRun() {
+		OptionParser parser = new OptionParser(RunnableCommand.class);
+		ParseResult result = parser.check("-bx -i 3 p".split(" "));
+		assertTrue(result.ok());
+		assertTrue(result.diagnostics().isEmpty());
+
+		RunnableCommand command = parser.get(RunnableCommand.class);
+		assertSame(command, result.get(RunnableCommand.class));
+		assertEquals(3, command.i);
+		assertEquals(0, command.xc);
+		assertArrayEquals(new String[] { "p" }, result.commands().get(command));
+	}
+
+	@Test
+	public void manyRequiredOptions() {
+		OptionParser parser = new OptionParser(ManyOptions.class);
+		ParseResult result = parser.check("--o1 --o64".split(" "));
+		assertEquals(2, result.diagnostics().size());
+		assertEquals("--o0", result.diagnostics().get(0).option());
+		assertEquals("--o65", result.diagnostics().get(1).option());
+	}
+
+	private static void assertDiagnostic(Diagnostic d, int index, String token, String option) {
+		assertEquals(index, d.index());
+		assertEquals(token, d.token());
+		assertEquals(option, d.option());
+	}
+
+	@Command(name = "versioned")
+	static class Versioned {
+		@Option(description = "", opt = { "--verbose" })
+		boolean verbose;
+
+		@Option(description = "", opt = { "--version" })
+		boolean version;
+
+		@Option(description = "", opt = { "-i" })
+		int i;
+
+		@Option(description = "", opt = { "-n" }, required = true)
+		int n;
+	}
+}
@@ -0,0 +1,80 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.ArgFiles;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CommandLineTest {
+
+	@Test
+	public void quoting() {
+		OptionParser parser = new OptionParser(Primitives.class, Wrappers.class);
+		Primitives p = parser.get(Primitives.class);
+		Wrappers w = parser.get(Wrappers.class);
+
+		String line = " -i 1 'a b' \"c \\\"d\\\" \\e $x\" f\\ g '' '\\-h' # comment\n load --string=\"x y\" -- -i z\\\n2";
+		Map<Object, String[]> result = parser.parse(line, true);
+		assertEquals(1, p.i);
+		assertEquals("x y", w.str);
+		assertArrayEquals(new String[] { "a b", "c \"d\" \\e $x", "f g", "", "-h" }, result.get(p));
+		assertArrayEquals(new String[] { "-i", "z2" }, result.get(w));
+	}
+
+	@Test
+	public void sameAsArgs() {
+		OptionParser parser = new OptionParser(Primitives.class);
+		Primitives p = parser.get(Primitives.class);
+		parser.parse("-bi 7 --long=8 a");
+		assertTrue(p.b);
+		assertEquals(7, p.i);
+		assertEquals(8L, p.l);
+	}
+
+	@Test
+	public void argFile() throws IOException {
+		Path path = Files.createTempFile("rop", ".args");
+		path.toFile().deleteOnExit();
+		Files.write(path, "-i 3 'a b'".getBytes(StandardCharsets.UTF_8));
+		OptionParser parser = new OptionParser(Primitives.class).argFiles(ArgFiles.QUOTED);
+		Primitives p = parser.get(Primitives.class);
+
+		Map<Object, String[]> result = parser.parse("'@" + path + "' c @@d");
+		assertEquals(3, p.i);
+		assertArrayEquals(new String[] { "a b", "c", "@d" }, result.get(p));
+	}
+
+	@Test
+	public void completion() {
+		OptionParser parser = new OptionParser(Primitives.class).completion(true);
+		PrintStream out = System.out;
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buf, true));
+		try {
+			assertTrue(parser.parse("__complete --lo").isEmpty());
+		} finally {
+			System.setOut(out);
+		}
+		assertTrue(buf.toString().startsWith("--long"));
+	}
+
+	@Test(expected = OptParseException.class)
+	public void unterminatedQuote() {
+		new OptionParser(Primitives.class).parse("a 'b");
+	}
+
+	@Test(expected = OptParseException.class)
+	public void unterminatedDoubleQuote() {
+		new OptionParser(Primitives.class).parse("a \"b\\\"");
+	}
+}
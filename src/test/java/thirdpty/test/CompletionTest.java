@@ -0,0 +1,143 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CompletionTest {
+
+	@Test
+	public void options() {
+		OptionParser parser = new OptionParser(Tool.class, Build.class);
+		assertEquals("-v\tverbose output\n--verbose\tverbose output\n--name\tthe name\n--help\tdisplay this help and exit\n", complete(parser, false, "-"));
+		assertEquals("--unit\tthe time unit\n", complete(parser, false, "build", "--u"));
+		assertEquals("", complete(parser, false, "build", "--x"));
+	}
+
+	@Test
+	public void commands() {
+		OptionParser parser = new OptionParser(Tool.class, Build.class, Clean.class);
+		assertEquals("build\tBuild it\nclean\n", complete(parser, false, ""));
+		assertEquals("build\tBuild it\n", complete(parser, false, "-v", "b"));
+		assertEquals(":files\n", complete(parser, false, "build", "c")); // only one sub-command
+		assertEquals("clean\n", complete(parser, true, "build", "c"));
+		assertEquals(":files\n", complete(parser, true, "--", "c"));
+	}
+
+	@Test
+	public void optionArguments() {
+		OptionParser parser = new OptionParser(Tool.class, Build.class);
+		assertEquals("SECONDS\n", complete(parser, false, "build", "--unit", "s"));
+		assertEquals("SECONDS\n", complete(parser, false, "build", "-u", "SE"));
+		assertEquals(":files\n", complete(parser, false, "build", "-o", ""));
+		assertEquals(":files\n", complete(parser, false, "build", "-vo", ""));
+		assertEquals("", complete(parser, false, "build", "--jobs", "")); // free-form
+		assertEquals("", complete(parser, false, "build", "--range", "1", "")); // arity 2
+		assertEquals("build\tBuild it\n", complete(parser, false, "--name", "x", "bu"));
+		assertEquals(":files\n", complete(parser, false, "build", "--unit=SECONDS", "x"));
+		assertEquals("SECONDS\n", complete(parser, false, "build", "--un", "s")); // unique prefix
+	}
+
+	@Test
+	public void noInstanceCreated() {
+		OptionParser parser = new OptionParser(Tool.class).register("build", () -> Build.class);
+		Tool.created = 0;
+		Build.created = 0;
+		assertEquals("--unit\tthe time unit\n", complete(parser.newSession(), false, "build", "--u"));
+		assertEquals(0, Tool.created);
+		assertEquals(0, Build.created);
+	}
+
+	@Test
+	public void disabledByDefault() {
+		OptionParser parser = new OptionParser(Tool.class, Build.class);
+		Map<Object, String[]> result = parser.parse(new String[] { "__complete", "-" });
+		assertArrayEquals(new String[] { "__complete", "-" }, result.get(parser.get(Tool.class)));
+	}
+
+	@Test
+	public void scripts() {
+		assertTrue(OptionParser.completionScript("bash", "my-tool").contains("complete -F _rop_my_tool my-tool"));
+		assertTrue(OptionParser.completionScript("zsh", "my-tool").startsWith("#compdef my-tool\n"));
+		assertTrue(OptionParser.completionScript("fish", "my-tool").contains("complete -c my-tool -f -a '(_rop_my_tool)'"));
+		for (String shell : new String[] { "bash", "zsh", "fish" }) {
+			assertTrue(OptionParser.completionScript(shell, "my-tool").contains(" __complete "));
+		}
+
+		try {
+			OptionParser.completionScript("csh", "my-tool");
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Unsupported shell 'csh', expected bash, zsh or fish", e.getMessage());
+		}
+	}
+
+	private static String complete(OptionParser parser, boolean multi, String... words) {
+		String[] args = new String[words.length + 1];
+		args[0] = "__complete";
+		System.arraycopy(words, 0, args, 1, words.length);
+
+		PrintStream out = System.out;
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buf, true));
+		try {
+			assertTrue(parser.completion(true).parse(args, multi).isEmpty());
+		} finally {
+			System.setOut(out);
+		}
+		return buf.toString();
+	}
+
+	@Command(name = "tool")
+	static class Tool {
+		static int created;
+
+		@Option(description = "verbose output", opt = { "-v", "--verbose" })
+		boolean verbose;
+
+		@Option(description = "the name", opt = { "--name" })
+		String name;
+
+		@Option(description = "secret", opt = { "--token" }, hidden = true)
+		String token;
+
+		Tool() {
+			created++;
+		}
+	}
+
+	@Command(name = "build", descriptions = { "Build it", "and more" })
+	static class Build {
+		static int created;
+
+		@Option(description = "the time unit", opt = { "-u", "--unit" }, ignoreCase = true)
+		TimeUnit unit;
+
+		@Option(description = "the output", opt = { "-o", "--output" })
+		File output;
+
+		@Option(description = "the jobs", opt = { "--jobs" })
+		int jobs;
+
+		@Option(description = "the range", opt = { "--range" }, arity = 2)
+		int[] range;
+
+		Build() {
+			created++;
+		}
+	}
+
+	@Command(name = "clean")
+	static class Clean {
+	}
+}
@@ -0,0 +1,142 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConvertersTest {
+
+	@Test
+	public void builtins() {
+		OptionParser parser = new OptionParser(Types.class);
+		parser.parse(new String[] { "--big-int", "123456789012345678901234567890", "--big-dec=0.1", "--duration", "PT1M30S",
+			"--instant", "2020-01-02T03:04:05Z", "--uri", "http://example.com/x", "--address", "[::1]:8080",
+			"--charset", "utf-8", "--unit", "SECONDS", "--color=Red" });
+
+		Types t = parser.get(Types.class);
+		assertEquals(new BigInteger("123456789012345678901234567890"), t.bigInt);
+		assertEquals(new BigDecimal("0.1"), t.bigDec);
+		assertEquals(Duration.ofSeconds(90), t.duration);
+		assertEquals(Instant.parse("2020-01-02T03:04:05Z"), t.instant);
+		assertEquals(URI.create("http://example.com/x"), t.uri);
+		assertEquals(8080, t.address.getPort());
+		assertTrue(t.address.getAddress().isLoopbackAddress());
+		assertEquals(StandardCharsets.UTF_8, t.charset);
+		assertEquals(TimeUnit.SECONDS, t.unit);
+		assertEquals(Color.RED, t.color);
+	}
+
+	@Test
+	public void enumCase() {
+		OptionParser parser = new OptionParser(Types.class);
+		try {
+			parser.parse("--unit seconds".split(" "));
+			fail();
+		} catch (OptParseException e) {
+			assertTrue(e.getCause().getMessage().startsWith("Expected one of [NANOSECONDS, MICROSECONDS,"));
+		}
+	}
+
+	@Test
+	public void added() {
+		OptionParser parser = new OptionParser().converter(Point.class, value -> {
+			String[] xy = value.split(",");
+			return new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+		}).register(Plot.class);
+		parser.parse("-p 3,4".split(" "));
+		assertEquals(3, parser.get(Plot.class).point.x);
+		assertEquals(4, parser.get(Plot.class).point.y);
+
+		try {
+			parser.parse("-p 3".split(" "));
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Unable to parse '3' for option 'point' (thirdpty.test.ConvertersTest$Point)", e.getMessage());
+			assertTrue(e.getCause() instanceof ArrayIndexOutOfBoundsException);
+		}
+	}
+
+	@Test
+	public void perParser() {
+		OptionParser seconds = new OptionParser().converter(Duration.class, value -> Duration.ofSeconds(Long.parseLong(value))).register(Types.class);
+		seconds.parse("--duration 90".split(" "));
+		assertEquals(Duration.ofSeconds(90), seconds.get(Types.class).duration);
+		OptionParser session = seconds.newSession(); // with the converters of the parser
+		session.parse("--duration 30".split(" "));
+		assertEquals(Duration.ofSeconds(30), session.get(Types.class).duration);
+
+		OptionParser iso = new OptionParser(Types.class); // the same Command, with the built-in one
+		iso.parse("--duration PT1M".split(" "));
+		assertEquals(Duration.ofMinutes(1), iso.get(Types.class).duration);
+
+		try {
+			new OptionParser(Plot.class);
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Unsupported type 'thirdpty.test.ConvertersTest$Point' for 'thirdpty.test.ConvertersTest$Point thirdpty.test.ConvertersTest$Plot.point'", e.getMessage());
+		}
+	}
+
+	@Command(name = "types")
+	static class Types {
+		@Option(opt = "--big-int", description = "")
+		BigInteger bigInt;
+
+		@Option(opt = "--big-dec", description = "")
+		BigDecimal bigDec;
+
+		@Option(opt = "--duration", description = "")
+		Duration duration;
+
+		@Option(opt = "--instant", description = "")
+		Instant instant;
+
+		@Option(opt = "--uri", description = "")
+		URI uri;
+
+		@Option(opt = "--address", description = "")
+		InetSocketAddress address;
+
+		@Option(opt = "--charset", description = "")
+		Charset charset;
+
+		@Option(opt = "--unit", description = "")
+		TimeUnit unit;
+
+		@Option(opt = "--color", description = "", ignoreCase = true)
+		Color color;
+	}
+
+	enum Color {
+		RED, GREEN, BLUE
+	}
+
+	static class Point {
+		final int x, y;
+
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	@Command(name = "plot")
+	static class Plot {
+		@Option(opt = "-p", description = "the point, as x,y")
+		Point point;
+	}
+}
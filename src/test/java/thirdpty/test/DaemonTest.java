@@ -0,0 +1,209 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.Daemon;
+import com.github.ryenus.rop.DaemonClient;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.ArgFiles;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DaemonTest {
+
+	@Test
+	public void concurrentRequests() throws Exception {
+		Daemon daemon = new Daemon(new OptionParser(Echo.class));
+		ServerSocketChannel server = Daemon.loopback(0);
+		InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+		Thread serving = new Thread(() -> {
+			try {
+				daemon.serve(server);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		serving.start();
+
+		ExecutorService clients = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int n = 0; n < 50; n++) {
+				int i = n;
+				futures.add(clients.submit(() -> {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					ByteArrayOutputStream err = new ByteArrayOutputStream();
+					try (SocketChannel channel = SocketChannel.open(address)) {
+						String[] args = i % 10 == 9 ? new String[] { "-x" } : new String[] { "-n", String.valueOf(i), "p" + i };
+						int status = DaemonClient.run(channel, args, Paths.get("/tmp/" + i), Collections.singletonMap("ID", "e" + i), out, err);
+						return status + "|" + out + "|" + err;
+					}
+				}));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				String result = futures.get(i).get();
+				if (i % 10 == 9) {
+					assertEquals("1||error: Unknown option 'x'\n", result);
+				} else {
+					assertEquals(i % 3 + "|" + i + " p" + i + " " + Paths.get("/tmp/" + i) + " e" + i + "\n|warn\n", result);
+				}
+			}
+		} finally {
+			clients.shutdown();
+			daemon.close();
+			serving.join();
+		}
+	}
+
+	@Test
+	public void argFileRelativeToClient() throws Exception {
+		Path dir = Files.createTempDirectory("rop-daemon");
+		Files.write(dir.resolve("args.txt"), "-n 7 p".getBytes(StandardCharsets.UTF_8));
+		assertFalse(Files.exists(Paths.get("args.txt"))); // not in the cwd of the daemon
+
+		Daemon daemon = new Daemon(new OptionParser(Echo.class).argFiles(ArgFiles.QUOTED));
+		ServerSocketChannel server = Daemon.loopback(0);
+		Thread serving = new Thread(() -> {
+			try {
+				daemon.serve(server);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		serving.start();
+
+		try (SocketChannel channel = SocketChannel.open(server.getLocalAddress())) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			int status = DaemonClient.run(channel, new String[] { "@args.txt" }, dir, Collections.singletonMap("ID", "e"), out, err);
+			assertEquals("7 p " + dir + " e\n", out.toString());
+			assertEquals(1, status);
+		} finally {
+			daemon.close();
+			serving.join();
+		}
+	}
+
+	@Test
+	public void oversizedRequest() throws Exception {
+		Daemon daemon = new Daemon(new OptionParser(Echo.class));
+		ServerSocketChannel server = Daemon.loopback(0);
+		Thread serving = new Thread(() -> {
+			try {
+				daemon.serve(server);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		serving.start();
+
+		try (SocketChannel channel = SocketChannel.open(server.getLocalAddress())) {
+			DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+			request.writeInt(0x524f5031);
+			request.writeInt(Integer.MAX_VALUE); // args
+			request.flush();
+
+			DataInputStream response = new DataInputStream(Channels.newInputStream(channel));
+			assertEquals(2, response.readByte()); // stderr
+			byte[] err = new byte[response.readInt()];
+			response.readFully(err);
+			assertEquals("error: Malformed request\n", new String(err, StandardCharsets.UTF_8));
+			assertEquals(0, response.readByte()); // exit
+			assertEquals(1, response.readInt());
+		} finally {
+			daemon.close();
+			serving.join();
+		}
+	}
+
+	@Test
+	public void systemOutputNotReplaced() throws Exception {
+		PrintStream original = System.out;
+		ByteArrayOutputStream direct = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(direct, true));
+		try {
+			PrintStream replaced = System.out;
+			assertEquals("0||", request(new OptionParser(Legacy.class)));
+			assertSame(replaced, Legacy.seen);
+			assertEquals("legacy\n", direct.toString());
+		} finally {
+			System.setOut(original);
+		}
+	}
+
+	@Test
+	public void routedSystemOutput() throws Exception {
+		PrintStream original = System.out;
+		assertEquals("0|legacy\n|", request(new OptionParser(Legacy.class).routeSystemOutput(true)));
+		assertNotSame(original, Legacy.seen);
+		assertSame(original, System.out); // put back after the request
+	}
+
+	private static String request(OptionParser parser) throws Exception {
+		Daemon daemon = new Daemon(parser);
+		ServerSocketChannel server = Daemon.loopback(0);
+		Thread serving = new Thread(() -> {
+			try {
+				daemon.serve(server);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		serving.start();
+
+		try (SocketChannel channel = SocketChannel.open(server.getLocalAddress())) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			int status = DaemonClient.run(channel, new String[0], Paths.get("/tmp"), Collections.emptyMap(), out, err);
+			return status + "|" + out + "|" + err;
+		} finally {
+			daemon.close();
+			serving.join();
+		}
+	}
+
+	@Command(name = "legacy")
+	static class Legacy {
+		static volatile PrintStream seen;
+
+		void run() {
+			seen = System.out;
+			System.out.println("legacy");
+		}
+	}
+
+	@Command(name = "echo")
+	static class Echo {
+		@Option(description = "", opt = { "-n" })
+		int n = -1;
+
+		int run(String[] params) throws InterruptedException {
+			int seen = n;
+			Thread.sleep(1); // let the other requests run meanwhile
+			OptionParser.stdout().println(n + " " + String.join(" ", params) + " " + Daemon.workingDir() + " " + Daemon.env().get("ID"));
+			OptionParser.stderr().println("warn");
+			return seen == n ? n % 3 : -1;
+		}
+	}
+}
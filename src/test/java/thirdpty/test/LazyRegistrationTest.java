@@ -0,0 +1,56 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LazyRegistrationTest {
+
+	@Test
+	public void resolvedOnDemand() {
+		AtomicInteger calls = new AtomicInteger();
+		OptionParser parser = new OptionParser(Primitives.class);
+		parser.register("load", () -> {
+			calls.incrementAndGet();
+			return Wrappers.class;
+		});
+
+		parser.parse("-i 1".split("\\s+"));
+		assertEquals(0, calls.get());
+
+		parser.parse("-i 1 load -i 2".split("\\s+"));
+		assertEquals(1, calls.get());
+		assertEquals(Integer.valueOf(2), parser.get(Wrappers.class).i);
+
+		parser.parse("load -i 3".split("\\s+"));
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void sessionsResolveOwnInstance() {
+		Wrappers w = new Wrappers();
+		OptionParser parser = new OptionParser(Primitives.class).register("load", () -> w);
+		OptionParser session = parser.newSession();
+
+		session.parse("load -i 2".split("\\s+"));
+		assertNotSame(w, session.get(Wrappers.class));
+		assertEquals(Integer.valueOf(2), session.get(Wrappers.class).i);
+		assertSame(w, parser.get(Wrappers.class));
+		assertNull(w.i);
+	}
+
+	@Test(expected = OptParseException.class)
+	public void nameMismatch() {
+		OptionParser parser = new OptionParser(Primitives.class).register("wrappers", () -> Wrappers.class);
+		parser.parse("wrappers".split("\\s+"));
+	}
+
+	@Test(expected = OptParseException.class)
+	public void duplicateName() {
+		new OptionParser(Primitives.class).register("load", () -> Wrappers.class).register(Wrappers.class);
+	}
+}
@@ -0,0 +1,81 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LongOptionTest {
+
+	private OptionParser parser;
+
+	@Test
+	public void uniquePrefix() {
+		LongOptions l = new LongOptions();
+		parser = new OptionParser(l);
+		parser.parse("--verb --vers 2 --n 3".split("\\s+"));
+		assertTrue(l.verbose);
+		assertEquals(2, l.version);
+		assertEquals(3, l.number);
+	}
+
+	@Test
+	public void exactMatchWins() {
+		LongOptions l = new LongOptions();
+		parser = new OptionParser(l);
+		parser.parse("--ver 1".split("\\s+"));
+		assertEquals(1, l.ver);
+	}
+
+	@Test
+	public void aliasesNotAmbiguous() {
+		LongOptions l = new LongOptions();
+		parser = new OptionParser(l);
+		parser.parse("--num 4".split("\\s+")); // --number and --numeric are the same option
+		assertEquals(4, l.number);
+	}
+
+	@Test(expected = OptParseException.class)
+	public void ambiguousPrefix() {
+		parser = new OptionParser(LongOptions.class);
+		parser.parse("--ve".split("\\s+"));
+	}
+
+	@Test
+	public void emptyName() {
+		parser = new OptionParser(LongOptions.class);
+		try {
+			parser.parse(new String[] { "--=1" });
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Malformed option '--=1'", e.getMessage());
+		}
+	}
+
+	@Test(expected = OptParseException.class)
+	public void shortNotAbbreviated() {
+		parser = new OptionParser(LongOptions.class);
+		parser.parse("--lo".split("\\s+")); // -long is not a long option
+	}
+}
+
+@Command(name = "long")
+class LongOptions {
+	@Option(description = "", opt = { "-V", "--verbose" })
+	boolean verbose;
+
+	@Option(description = "", opt = { "--version" })
+	int version;
+
+	@Option(description = "", opt = { "--ver" })
+	int ver;
+
+	@Option(description = "", opt = { "--number", "--numeric" })
+	int number;
+
+	@Option(description = "", opt = { "-long" })
+	long l;
+}
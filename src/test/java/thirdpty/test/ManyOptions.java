@@ -0,0 +1,205 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+
+@Command(name = "many")
+public class ManyOptions {
+	@Option(description = "", opt = "--o0", required = true)
+	boolean o0;
+
+	@Option(description = "", opt = "--o1", required = true)
+	boolean o1;
+
+	@Option(description = "", opt = "--o2")
+	boolean o2;
+
+	@Option(description = "", opt = "--o3")
+	boolean o3;
+
+	@Option(description = "", opt = "--o4")
+	boolean o4;
+
+	@Option(description = "", opt = "--o5")
+	boolean o5;
+
+	@Option(description = "", opt = "--o6")
+	boolean o6;
+
+	@Option(description = "", opt = "--o7")
+	boolean o7;
+
+	@Option(description = "", opt = "--o8")
+	boolean o8;
+
+	@Option(description = "", opt = "--o9")
+	boolean o9;
+
+	@Option(description = "", opt = "--o10")
+	boolean o10;
+
+	@Option(description = "", opt = "--o11")
+	boolean o11;
+
+	@Option(description = "", opt = "--o12")
+	boolean o12;
+
+	@Option(description = "", opt = "--o13")
+	boolean o13;
+
+	@Option(description = "", opt = "--o14")
+	boolean o14;
+
+	@Option(description = "", opt = "--o15")
+	boolean o15;
+
+	@Option(description = "", opt = "--o16")
+	boolean o16;
+
+	@Option(description = "", opt = "--o17")
+	boolean o17;
+
+	@Option(description = "", opt = "--o18")
+	boolean o18;
+
+	@Option(description = "", opt = "--o19")
+	boolean o19;
+
+	@Option(description = "", opt = "--o20")
+	boolean o20;
+
+	@Option(description = "", opt = "--o21")
+	boolean o21;
+
+	@Option(description = "", opt = "--o22")
+	boolean o22;
+
+	@Option(description = "", opt = "--o23")
+	boolean o23;
+
+	@Option(description = "", opt = "--o24")
+	boolean o24;
+
+	@Option(description = "", opt = "--o25")
+	boolean o25;
+
+	@Option(description = "", opt = "--o26")
+	boolean o26;
+
+	@Option(description = "", opt = "--o27")
+	boolean o27;
+
+	@Option(description = "", opt = "--o28")
+	boolean o28;
+
+	@Option(description = "", opt = "--o29")
+	boolean o29;
+
+	@Option(description = "", opt = "--o30")
+	boolean o30;
+
+	@Option(description = "", opt = "--o31")
+	boolean o31;
+
+	@Option(description = "", opt = "--o32")
+	boolean o32;
+
+	@Option(description = "", opt = "--o33")
+	boolean o33;
+
+	@Option(description = "", opt = "--o34")
+	boolean o34;
+
+	@Option(description = "", opt = "--o35")
+	boolean o35;
+
+	@Option(description = "", opt = "--o36")
+	boolean o36;
+
+	@Option(description = "", opt = "--o37")
+	boolean o37;
+
+	@Option(description = "", opt = "--o38")
+	boolean o38;
+
+	@Option(description = "", opt = "--o39")
+	boolean o39;
+
+	@Option(description = "", opt = "--o40")
+	boolean o40;
+
+	@Option(description = "", opt = "--o41")
+	boolean o41;
+
+	@Option(description = "", opt = "--o42")
+	boolean o42;
+
+	@Option(description = "", opt = "--o43")
+	boolean o43;
+
+	@Option(description = "", opt = "--o44")
+	boolean o44;
+
+	@Option(description = "", opt = "--o45")
+	boolean o45;
+
+	@Option(description = "", opt = "--o46")
+	boolean o46;
+
+	@Option(description = "", opt = "--o47")
+	boolean o47;
+
+	@Option(description = "", opt = "--o48")
+	boolean o48;
+
+	@Option(description = "", opt = "--o49")
+	boolean o49;
+
+	@Option(description = "", opt = "--o50")
+	boolean o50;
+
+	@Option(description = "", opt = "--o51")
+	boolean o51;
+
+	@Option(description = "", opt = "--o52")
+	boolean o52;
+
+	@Option(description = "", opt = "--o53")
+	boolean o53;
+
+	@Option(description = "", opt = "--o54")
+	boolean o54;
+
+	@Option(description = "", opt = "--o55")
+	boolean o55;
+
+	@Option(description = "", opt = "--o56")
+	boolean o56;
+
+	@Option(description = "", opt = "--o57")
+	boolean o57;
+
+	@Option(description = "", opt = "--o58")
+	boolean o58;
+
+	@Option(description = "", opt = "--o59")
+	boolean o59;
+
+	@Option(description = "", opt = "--o60")
+	boolean o60;
+
+	@Option(description = "", opt = "--o61")
+	boolean o61;
+
+	@Option(description = "", opt = "--o62")
+	boolean o62;
+
+	@Option(description = "", opt = "--o63")
+	boolean o63;
+
+	@Option(description = "", opt = "--o64", required = true)
+	boolean o64;
+
+	@Option(description = "", opt = "--o65", required = true)
+	boolean o65;
+}
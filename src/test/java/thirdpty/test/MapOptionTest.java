@@ -0,0 +1,94 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MapOptionTest {
+
+	@Test
+	public void properties() {
+		OptionParser parser = new OptionParser(Launcher.class);
+		String[] params = parser.parse("-Dfile.encoding=UTF-8 -D a=b=c -Dempty= -Dflag --set x=1 --set=y=0x10 -Dfile.encoding=ASCII Main".split(" "))
+			.get(parser.get(Launcher.class));
+		Launcher l = parser.get(Launcher.class);
+		assertEquals(Arrays.asList("file.encoding", "a", "empty", "flag"), Arrays.asList(l.props.keySet().toArray()));
+		assertEquals("ASCII", l.props.get("file.encoding")); // the last one wins
+		assertEquals("b=c", l.props.get("a")); // split at the first '='
+		assertEquals("", l.props.get("empty"));
+		assertEquals("", l.props.get("flag"));
+		assertEquals(Integer.valueOf(1), l.settings.get("x"));
+		assertEquals(Integer.valueOf(16), l.settings.get("y"));
+		assertArrayEquals(new String[] { "Main" }, params);
+	}
+
+	@Test
+	public void manyProperties() {
+		String[] args = new String[10_000];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = "-Dp" + i + "=" + i;
+		}
+
+		OptionParser parser = new OptionParser(Launcher.class);
+		parser.parse(args);
+		Map<String, String> props = parser.get(Launcher.class).props;
+		assertEquals(10_000, props.size());
+		assertEquals("9999", props.get("p9999"));
+	}
+
+	@Test
+	public void split() {
+		OptionParser parser = new OptionParser(Launcher.class);
+		parser.parse("--flags a=true,b=FALSE".split(" "));
+		assertEquals(Boolean.TRUE, parser.get(Launcher.class).flags.get("a"));
+		assertEquals(Boolean.FALSE, parser.get(Launcher.class).flags.get("b"));
+	}
+
+	@Test
+	public void badEntries() {
+		OptionParser parser = new OptionParser(Launcher.class);
+		try {
+			parser.parse("--set x=one".split(" "));
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Unable to parse 'x=one' for option 'settings' (java.util.Map)", e.getMessage());
+		}
+
+		try {
+			parser.parse(new String[] { "-D=x" });
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Key missing, expected key=value", e.getCause().getMessage());
+		}
+	}
+
+	@Test(expected = OptParseException.class)
+	public void nonStringKeys() {
+		new OptionParser(IntKeys.class);
+	}
+
+	@Command(name = "launch")
+	static class Launcher {
+		@Option(opt = "-D", description = "a system property, as key=value")
+		Map<String, String> props;
+
+		@Option(opt = "--set", description = "a setting, as key=number")
+		Map<String, Integer> settings;
+
+		@Option(opt = "--flags", description = "flags, as key=bool,...", split = ",")
+		Map<String, Boolean> flags;
+	}
+
+	@Command(name = "int-keys")
+	static class IntKeys {
+		@Option(opt = "-m", description = "")
+		Map<Integer, String> m;
+	}
+}
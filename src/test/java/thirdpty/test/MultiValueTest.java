@@ -0,0 +1,142 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import com.github.ryenus.rop.ParseResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultiValueTest {
+
+	@Test
+	public void repeated() {
+		OptionParser parser = new OptionParser(Multi.class);
+		parser.parse("-p 8080 -p8081 --port=0x1f90 --names a --names b --names a".split(" "));
+		Multi m = parser.get(Multi.class);
+		assertArrayEquals(new int[] { 8080, 8081, 8080 }, m.ports);
+		assertEquals(Arrays.asList("a", "b", "a"), m.names);
+		assertArrayEquals(new long[] { 1 }, m.ids); // default kept
+	}
+
+	@Test
+	public void split() {
+		OptionParser parser = new OptionParser(Multi.class);
+		parser.parse("--ids 1,2,3 --ids=-4 --weights 0.5;;1.5 -u seconds,minutes,seconds".split(" "));
+		Multi m = parser.get(Multi.class);
+		assertArrayEquals(new long[] { 1, 2, 3, -4 }, m.ids);
+		assertArrayEquals(new double[] { 0.5, 1.5 }, m.weights, 0);
+		assertEquals(new LinkedHashSet<>(Arrays.asList(TimeUnit.SECONDS, TimeUnit.MINUTES)), m.units);
+	}
+
+	@Test
+	public void manyValues() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50_000; i++) {
+			sb.append(i).append(',');
+		}
+		sb.setLength(sb.length() - 1);
+
+		OptionParser parser = new OptionParser(Multi.class);
+		parser.parse(new String[] { "--ids", sb.toString() });
+		long[] ids = parser.get(Multi.class).ids;
+		assertEquals(50_000, ids.length);
+		assertEquals(49_999L, ids[49_999]);
+	}
+
+	@Test
+	public void arity() {
+		OptionParser parser = new OptionParser(Multi.class);
+		parser.parse("--point 1 2 --point=3 4 x".split(" "));
+		Multi m = parser.get(Multi.class);
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, m.points);
+
+		try {
+			parser.parse("--point 1".split(" "));
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Argument missing for option '--point', which takes 2", e.getMessage());
+		}
+	}
+
+	@Test
+	public void count() {
+		OptionParser parser = new OptionParser(Multi.class);
+		parser.parse("-vvv -v".split(" "));
+		assertEquals(4, parser.get(Multi.class).verbose);
+
+		parser.parse(new String[0]);
+		assertEquals(4, parser.get(Multi.class).verbose); // untouched, as any other option
+
+		try {
+			parser.parse(new String[] { "--verbose=2" });
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Option '--verbose' doesn't allow an argument", e.getMessage());
+		}
+	}
+
+	@Test
+	public void badValues() {
+		ParseResult result = new OptionParser(Multi.class).check("--ids 1,x,3,y".split(" "), false);
+		assertEquals(2, result.diagnostics().size());
+		assertEquals("Unable to parse 'x' for option 'ids' ([J)", result.diagnostics().get(0).message());
+		assertEquals("1,x,3,y", result.diagnostics().get(0).token());
+		assertEquals("Unable to parse 'y' for option 'ids' ([J)", result.diagnostics().get(1).message());
+	}
+
+	@Test(expected = OptParseException.class)
+	public void arityOnScalar() {
+		new OptionParser(ArityOnScalar.class);
+	}
+
+	@Test(expected = OptParseException.class)
+	public void countNotInt() {
+		new OptionParser(CountNotInt.class);
+	}
+
+	@Command(name = "multi")
+	static class Multi {
+		@Option(opt = { "-p", "--port" }, description = "")
+		int[] ports;
+
+		@Option(opt = "--ids", description = "", split = ",")
+		long[] ids = { 1 };
+
+		@Option(opt = "--weights", description = "", split = ";;")
+		double[] weights;
+
+		@Option(opt = "--names", description = "")
+		List<String> names = new ArrayList<>();
+
+		@Option(opt = { "-u", "--units" }, description = "", split = ",", ignoreCase = true)
+		Set<TimeUnit> units;
+
+		@Option(opt = "--point", description = "", arity = 2)
+		int[] points;
+
+		@Option(opt = { "-v", "--verbose" }, description = "", count = true)
+		int verbose;
+	}
+
+	@Command(name = "arity")
+	static class ArityOnScalar {
+		@Option(opt = "-a", description = "", arity = 2)
+		int a;
+	}
+
+	@Command(name = "count")
+	static class CountNotInt {
+		@Option(opt = "-c", description = "", count = true)
+		boolean c;
+	}
+}
@@ -105,6 +105,38 @@ public class OptionParserTest {
 		assertArrayEquals(new String[] { "run1" }, r.params);
 	}
 
+	@Test
+	public void parsersOfSameCommand() {
+		OptionParser p1 = new OptionParser(Primitives.class);
+		OptionParser p2 = new OptionParser(Primitives.class);
+		assertNotSame(p1.get(Primitives.class), p2.get(Primitives.class));
+
+		p1.parse("-b -i 1".split("\\s+"));
+		p2.parse("-i 2".split("\\s+"));
+		assertTrue(p1.get(Primitives.class).b);
+		assertEquals(1, p1.get(Primitives.class).i);
+		assertFalse(p2.get(Primitives.class).b);
+		assertEquals(2, p2.get(Primitives.class).i);
+	}
+
+	@Test
+	public void attachedArgs() {
+		parser = new OptionParser(Primitives.class);
+		Primitives p = parser.get(Primitives.class);
+		String[] args = parser.parse("-bi10 --long=0x10 -cx -".split("\\s+")).get(p);
+		assertTrue(p.b);
+		assertEquals(10, p.i);
+		assertEquals(16L, p.l);
+		assertEquals('x', p.c);
+		assertArrayEquals(new String[] { "-" }, args);
+	}
+
+	@Test(expected = OptParseException.class)
+	public void argNotAllowed() {
+		parser = new OptionParser(Primitives.class);
+		parser.parse("--boolean=true".split("\\s+"));
+	}
+
 	@Test
 	public void bareOption() {
 		parser = new OptionParser(BareOption.class);
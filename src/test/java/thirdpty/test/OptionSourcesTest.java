@@ -0,0 +1,142 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import com.github.ryenus.rop.ParseResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OptionSourcesTest {
+
+	@Test
+	public void precedence() throws IOException {
+		Path toml = config("server.toml",
+			"# comment",
+			"name = \"from config\" # trailing",
+			"path = 'from config'",
+			"[server]",
+			"port = 8080",
+			"hosts = [ \"a\", 'b', c ]",
+			"debug = true",
+			"unit = SECONDS");
+		OptionParser parser = new OptionParser(Server.class).config(toml);
+		parser.parse(new String[] { "--name", "from argv" });
+		Server s = parser.get(Server.class);
+		assertEquals("from argv", s.name); // argv > env > config
+		assertEquals(System.getenv("PATH"), s.path); // env > config
+		assertEquals(8080, s.port); // config > default
+		assertEquals(Arrays.asList("a", "b", "c"), s.hosts);
+		assertTrue(s.debug);
+		assertEquals(TimeUnit.SECONDS, s.unit);
+		assertEquals(9, s.retries); // default
+	}
+
+	@Test
+	public void requiredFromConfig() throws IOException {
+		Path props = config("server.properties", "server.port=0x10", "server.retries = 3");
+		OptionParser parser = new OptionParser(Strict.class);
+		try {
+			parser.parse(new String[0]);
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Required option not found for field int thirdpty.test.OptionSourcesTest$Strict.port", e.getMessage());
+		}
+
+		parser.config(props).parse(new String[0]);
+		assertEquals(16, parser.get(Strict.class).port);
+	}
+
+	@Test
+	public void reloadedIfModified() throws IOException {
+		Path props = config("reload.properties", "server.port=1");
+		OptionParser parser = new OptionParser(Strict.class).config(props);
+		parser.parse(new String[0]);
+		assertEquals(1, parser.get(Strict.class).port);
+
+		Files.write(props, "server.port=22".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(props, FileTime.fromMillis(Files.getLastModifiedTime(props).toMillis() + 10_000));
+		parser.parse(new String[0]);
+		assertEquals(22, parser.get(Strict.class).port);
+
+		Files.delete(props);
+		try {
+			parser.parse(new String[0]);
+			fail();
+		} catch (OptParseException e) {
+			assertTrue(e.getMessage().startsWith("Required option not found"));
+		}
+	}
+
+	@Test
+	public void badValues() throws IOException {
+		Path toml = config("bad.toml", "[server]", "port = eighty", "debug = yes");
+		ParseResult result = new OptionParser(Server.class).config(toml).check(new String[0], false);
+		assertEquals(2, result.diagnostics().size());
+		assertEquals("Unable to parse 'eighty' from config key 'server.port' for option 'port' (int)",
+			result.diagnostics().get(0).message());
+		assertEquals("--port", result.diagnostics().get(0).option());
+		assertEquals(-1, result.diagnostics().get(0).index());
+	}
+
+	@Test
+	public void badSyntax() throws IOException {
+		Path toml = config("syntax.toml", "[server]", "port = 1", "name = \"unterminated");
+		try {
+			new OptionParser(Server.class).config(toml).parse(new String[0]);
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Unterminated string at line 3 of the config file " + toml.toAbsolutePath().normalize(), e.getMessage());
+		}
+	}
+
+	private static Path config(String name, String... lines) throws IOException {
+		Path dir = Files.createTempDirectory("rop");
+		dir.toFile().deleteOnExit();
+		Path file = dir.resolve(name);
+		Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	@Command(name = "server")
+	static class Server {
+		@Option(opt = "--name", description = "", env = "ROP_TEST_UNSET_VARIABLE", config = "name")
+		String name = "default";
+
+		@Option(opt = "--path", description = "", env = "PATH", config = "path")
+		String path;
+
+		@Option(opt = "--port", description = "", config = "server.port")
+		int port;
+
+		@Option(opt = "--hosts", description = "", config = "server.hosts")
+		List<String> hosts;
+
+		@Option(opt = "--debug", description = "", config = "server.debug")
+		boolean debug;
+
+		@Option(opt = "--unit", description = "", config = "server.unit")
+		TimeUnit unit;
+
+		@Option(opt = "--retries", description = "", config = "server.retries")
+		int retries = 9;
+	}
+
+	@Command(name = "strict")
+	static class Strict {
+		@Option(opt = "--port", description = "", config = "server.port", required = true)
+		int port;
+	}
+}
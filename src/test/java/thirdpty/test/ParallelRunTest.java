@@ -0,0 +1,228 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ParallelRunTest {
+	static final List<String> ran = new CopyOnWriteArrayList<>();
+	static final CyclicBarrier barrier = new CyclicBarrier(2);
+	static volatile boolean concurrent; // a and b wait for each other
+	static volatile boolean direct; // print to System.out rather than OptionParser.stdout()
+	static volatile PrintStream seen; // System.out seen by the last command
+
+	@Test
+	public void runsAfterDependencies() {
+		OptionParser parser = new OptionParser(Tool.class, A.class, B.class, C.class);
+		String out = parse(parser, "c b a");
+		assertEquals("[tool, b, a, c]", ran.toString());
+		assertEquals("tool\nb\na\nc\n", out);
+	}
+
+	@Test
+	public void runsConcurrently() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			OptionParser parser = new OptionParser(Tool.class, A.class, B.class, C.class, Slow.class).parallel(executor);
+			concurrent = true;
+			String out = parse(parser, "slow c a b");
+			assertTrue(ran.indexOf("c") > ran.indexOf("a") && ran.indexOf("c") > ran.indexOf("b"));
+			assertEquals("tool\nslow\nc\na\nb\n", out); // in the command line order
+		} finally {
+			concurrent = false;
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void defaultExecutor() {
+		OptionParser parser = new OptionParser(Tool.class, B.class, C.class, Slow.class).parallel();
+		assertEquals("tool\nslow\nc\n", parse(parser, "slow c"));
+	}
+
+	@Test
+	public void systemOutputNotReplaced() {
+		OptionParser parser = new OptionParser(Tool.class, B.class, C.class, Slow.class).parallel();
+		PrintStream stdout = System.out;
+		try {
+			direct = true;
+			PrintStream out = new PrintStream(new ByteArrayOutputStream(), true);
+			System.setOut(out);
+			parser.parse("slow c".split(" "), true);
+			assertSame(out, seen);
+		} finally {
+			direct = false;
+			System.setOut(stdout);
+		}
+	}
+
+	@Test
+	public void routedSystemOutput() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			OptionParser parser = new OptionParser(Tool.class, A.class, B.class, C.class, Slow.class).parallel(executor).routeSystemOutput(true);
+			concurrent = true;
+			direct = true;
+			assertEquals("tool\nslow\nc\na\nb\n", parse(parser, "slow c a b"));
+		} finally {
+			concurrent = false;
+			direct = false;
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void replacedSystemOutputKept() {
+		OptionParser parser = new OptionParser(Tool.class, Replace.class).parallel().routeSystemOutput(true);
+		PrintStream stdout = System.out;
+		try {
+			System.setOut(new PrintStream(new ByteArrayOutputStream(), true));
+			parser.parse("replace".split(" "), true);
+			assertSame(Replace.out, System.out); // not put back over it
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+
+	@Test
+	public void aggregatesFailures() {
+		OptionParser parser = new OptionParser(Tool.class, Fail1.class, Fail2.class, Dependent.class, Slow.class).parallel();
+		try {
+			parse(parser, "fail1 dependent slow fail2");
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Commands failed: fail1, fail2, skipped: dependent", e.getMessage());
+			assertEquals(1, e.getSuppressed().length);
+		}
+		assertTrue(ran.contains("slow"));
+		assertFalse(ran.contains("dependent"));
+	}
+
+	@Test
+	public void circularDependency() {
+		OptionParser parser = new OptionParser(Tool.class, X.class, Y.class);
+		try {
+			parse(parser, "x y");
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Circular dependency between commands: x -> y -> x", e.getMessage());
+		}
+		assertEquals("[]", ran.toString());
+	}
+
+	/**
+	 * @return the output of the commands
+	 */
+	static String parse(OptionParser parser, String args) {
+		ran.clear();
+		barrier.reset();
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out, true));
+		try {
+			parser.parse(args.split(" "), true);
+		} finally {
+			System.setOut(stdout);
+		}
+		return out.toString().replace(System.lineSeparator(), "\n");
+	}
+
+	static void ran(String name) {
+		ran.add(name);
+		seen = System.out;
+		(direct ? System.out : OptionParser.stdout()).println(name);
+	}
+
+	@Command(name = "tool")
+	static class Tool {
+		void run() {
+			ran("tool");
+		}
+	}
+
+	@Command(name = "a")
+	static class A {
+		void run() throws Exception {
+			if (concurrent) {
+				barrier.await(5, TimeUnit.SECONDS);
+				Thread.sleep(10); // b prints first, still a is written first
+			}
+			ran("a");
+		}
+	}
+
+	@Command(name = "b")
+	static class B {
+		void run() throws Exception {
+			if (concurrent) {
+				barrier.await(5, TimeUnit.SECONDS);
+			}
+			ran("b");
+		}
+	}
+
+	@Command(name = "c", after = { "a", "b" })
+	static class C {
+		void run() {
+			ran("c");
+		}
+	}
+
+	@Command(name = "slow")
+	static class Slow {
+		void run() throws Exception {
+			Thread.sleep(10);
+			ran("slow");
+		}
+	}
+
+	@Command(name = "fail1")
+	static class Fail1 {
+		void run() {
+			throw new IllegalStateException("fail1");
+		}
+	}
+
+	@Command(name = "fail2")
+	static class Fail2 {
+		void run() {
+			throw new IllegalStateException("fail2");
+		}
+	}
+
+	@Command(name = "dependent", after = "fail1")
+	static class Dependent {
+		void run() {
+			ran("dependent");
+		}
+	}
+
+	@Command(name = "replace")
+	static class Replace {
+		static final PrintStream out = new PrintStream(new ByteArrayOutputStream(), true);
+
+		void run() {
+			System.setOut(out);
+		}
+	}
+
+	@Command(name = "x", after = "y")
+	static class X {
+	}
+
+	@Command(name = "y", after = "x")
+	static class Y {
+	}
+}
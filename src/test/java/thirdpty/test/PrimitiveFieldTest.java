@@ -39,4 +39,19 @@ public class PrimitiveFieldTest {
 		assertEquals(1, args.length);
 		assertEquals("-x", args[0]);
 	}
+
+	@Test
+	public void primitiveBounds() {
+		parser = new OptionParser(Primitives.class);
+		Primitives p = parser.get(Primitives.class);
+
+		parser.parse("-i -0x80000000 -l -0x8000000000000000 -d -1e3".split("\\s+"));
+		assertEquals(Integer.MIN_VALUE, p.i);
+		assertEquals(Long.MIN_VALUE, p.l);
+		assertTrue(p.d == -1000d);
+
+		parser.parse("-i #7fffffff -l 0777777777777777777777".split("\\s+"));
+		assertEquals(Integer.MAX_VALUE, p.i);
+		assertEquals(Long.MAX_VALUE, p.l);
+	}
 }
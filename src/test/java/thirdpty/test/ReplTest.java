@@ -0,0 +1,112 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import com.github.ryenus.rop.Repl;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplTest {
+
+	@Test
+	public void defaultsRestored() {
+		Primitives p = new Primitives();
+		p.i = 5;
+		OptionParser parser = new OptionParser(p).register("load", () -> Wrappers.class);
+		Repl repl = new Repl(parser).multi(true);
+
+		repl.exec("-b -i 1 load -i 2 -s x");
+		assertTrue(p.b);
+		assertEquals(1, p.i);
+		Wrappers w = parser.get(Wrappers.class);
+		assertEquals(Integer.valueOf(2), w.i);
+		assertEquals("x", w.str);
+
+		repl.exec("-l 3 load");
+		assertSame(w, parser.get(Wrappers.class)); // reused, not re-created
+		assertFalse(p.b);
+		assertEquals(5, p.i);
+		assertEquals(3L, p.l);
+		assertNull(w.i);
+		assertNull(w.str);
+		assertEquals(Arrays.asList("-b -i 1 load -i 2 -s x", "-l 3 load"), repl.history());
+	}
+
+	@Test
+	public void registeredCommandWins() {
+		OptionParser parser = new OptionParser(Primitives.class, History.class);
+		Repl repl = new Repl(parser);
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+		repl.run(new BufferedReader(new StringReader("history\nexit\n-i 2\n")), new PrintStream(buf, true));
+		assertEquals(1, parser.get(History.class).runs);
+		assertFalse(buf.toString().contains("    1  history"));
+		assertEquals(0, parser.get(Primitives.class).i); // ended by exit
+	}
+
+	@Test
+	public void defaultsCopied() {
+		OptionParser parser = new OptionParser(Tags.class);
+		Repl repl = new Repl(parser);
+
+		repl.exec("-t x");
+		repl.exec("");
+		Tags tags = parser.get(Tags.class);
+		assertEquals(Arrays.asList("a", "added"), tags.tags);
+		assertArrayEquals(new int[] { 1, -2 }, tags.sizes);
+
+		repl.exec("");
+		assertEquals(Arrays.asList("a", "added"), tags.tags); // not added twice to the defaults
+		assertArrayEquals(new int[] { 1, -2 }, tags.sizes);
+	}
+
+	@Test
+	public void interactive() {
+		OptionParser parser = new OptionParser(Primitives.class);
+		Repl repl = new Repl(parser).prompt("rop> ").historySize(2);
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		String input = "-i 1\n\n--help\n-x\nhistory\nexit\n-i 2\n";
+
+		repl.run(new BufferedReader(new StringReader(input)), new PrintStream(buf, true));
+		String output = buf.toString();
+		assertTrue(output.startsWith("rop> rop> rop> "));
+		assertTrue(output.contains("display this help and exit"));
+		assertTrue(output.contains("error: Unknown option 'x'"));
+		assertTrue(output.contains("    1  --help\n    2  -x\n"));
+		assertEquals(0, parser.get(Primitives.class).i); // reset by the lines after "-i 1"
+		assertEquals(Arrays.asList("--help", "-x"), repl.history());
+	}
+
+	@Command(name = "tags")
+	static class Tags {
+		@Option(opt = "-t", description = "the tags")
+		List<String> tags = new ArrayList<>(Arrays.asList("a"));
+
+		@Option(opt = "-s", description = "the sizes")
+		int[] sizes = { 1, 2 };
+
+		void run() {
+			tags.add("added"); // changed in place, the defaults not
+			sizes[1] = -sizes[1];
+		}
+	}
+
+	@Command(name = "history")
+	static class History {
+		int runs;
+
+		void run() {
+			runs++;
+		}
+	}
+}
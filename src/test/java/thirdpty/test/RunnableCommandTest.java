@@ -8,6 +8,8 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 
 public class RunnableCommandTest {
@@ -32,6 +34,58 @@ public class RunnableCommandTest {
 		assertArrayEquals(new String[] { "a", "b", "c" }, r.params);
 	}
 
+	@Test
+	public void runPreference() {
+		OverloadedRun r = new OverloadedRun();
+		parser = new OptionParser(r);
+		parser.parse("a".split("\\s+"));
+		assertEquals("run(String[], OptionParser)", r.called);
+	}
+
+	@Test(expected = OptParseException.class)
+	public void runFailure() {
+		parser = new OptionParser(FailingRun.class);
+		parser.parse(new String[0]);
+	}
+
+	@Test
+	public void runFailureNotWrapped() {
+		ThrowingRun.failure = new OptParseException("bad input");
+		try {
+			new OptionParser(ThrowingRun.class).parse(new String[0]);
+			fail();
+		} catch (OptParseException e) {
+			assertSame(ThrowingRun.failure, e);
+		}
+
+		ThrowingRun.failure = new StackOverflowError();
+		try {
+			new OptionParser(ThrowingRun.class).parse(new String[0]);
+			fail();
+		} catch (StackOverflowError e) {
+			assertSame(ThrowingRun.failure, e);
+		}
+
+		ThrowingRun.failure = new Exception("checked");
+		try {
+			new OptionParser(ThrowingRun.class).parse(new String[0]);
+			fail();
+		} catch (OptParseException e) {
+			assertSame(ThrowingRun.failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void timedRunErrorNotWrapped() {
+		ThrowingRun.failure = new StackOverflowError();
+		try {
+			new OptionParser(TimedThrowingRun.class).parse(new String[0]);
+			fail();
+		} catch (StackOverflowError e) {
+			assertSame(ThrowingRun.failure, e);
+		}
+	}
+
 	@Test(expected = OptParseException.class)
 	public void duplicateName() {
 		parser = new OptionParser(BareOption.class, SimpleRun.class);
@@ -169,3 +223,43 @@ class RunnableCommand5 {
 		set = true;
 	}
 }
+
+@Command(name = "overloaded", descriptions = "")
+class OverloadedRun {
+	String called;
+
+	void run() {
+		called = "run()";
+	}
+
+	void run(String[] params) {
+		called = "run(String[])";
+	}
+
+	void run(String[] params, OptionParser parser) {
+		called = "run(String[], OptionParser)";
+	}
+}
+
+@Command(name = "throwing")
+class ThrowingRun {
+	static Throwable failure;
+
+	void run() throws Throwable {
+		throw failure;
+	}
+}
+
+@Command(name = "timed-throwing", timeout = 10_000)
+class TimedThrowingRun {
+	void run() throws Throwable {
+		throw ThrowingRun.failure;
+	}
+}
+
+@Command(name = "failing", descriptions = "")
+class FailingRun {
+	void run() {
+		throw new IllegalStateException("failed");
+	}
+}
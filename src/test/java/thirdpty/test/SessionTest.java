@@ -0,0 +1,64 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptParseException;
+import com.github.ryenus.rop.OptionParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SessionTest {
+
+	@Test
+	public void freshInstances() {
+		OptionParser parser = new OptionParser(Primitives.class, Wrappers.class);
+		OptionParser session = parser.newSession();
+
+		Primitives p = session.get(Primitives.class);
+		assertNotNull(p);
+		assertNotSame(parser.get(Primitives.class), p);
+
+		session.parse("-i 1 load -i 2".split("\\s+"), true);
+		assertEquals(1, p.i);
+		assertEquals(Integer.valueOf(2), session.get(Wrappers.class).i);
+		assertEquals(0, parser.get(Primitives.class).i);
+		assertNull(parser.get(Wrappers.class).i);
+	}
+
+	@Test(expected = OptParseException.class)
+	public void requiredNotLeaked() {
+		RunnableCommand r = new RunnableCommand();
+		OptionParser parser = new OptionParser(r);
+		parser.parse("-bx".split("\\s+"));
+		assertTrue(r.b);
+		parser.parse("-i 1".split("\\s+")); // -b and -x are required again
+	}
+
+	@Test
+	public void concurrentSessions() throws Exception {
+		OptionParser parser = new OptionParser(Primitives.class, Wrappers.class);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (int n = 0; n < 200; n++) {
+				int i = n;
+				futures.add(executor.submit(() -> {
+					OptionParser session = parser.newSession();
+					session.parse(("-i " + i + " load -l " + i).split("\\s+"), true);
+					return session.get(Primitives.class).i == i && session.get(Wrappers.class).l == i;
+				}));
+			}
+
+			for (Future<Boolean> future : futures) {
+				assertTrue(future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
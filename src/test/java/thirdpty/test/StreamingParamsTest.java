@@ -0,0 +1,109 @@
+package thirdpty.test;
+
+import com.github.ryenus.rop.OptionParser;
+import com.github.ryenus.rop.OptionParser.Command;
+import com.github.ryenus.rop.OptionParser.Option;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class StreamingParamsTest {
+
+	@Test
+	public void listView() {
+		String[] args = "a -i 1 b c \\d -- e".split("\\s+");
+		OptionParser parser = new OptionParser(ListRun.class);
+		parser.parse(args);
+
+		List<String> params = parser.get(ListRun.class).params;
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"), params);
+		assertSame(args[0], params.get(0));
+		assertSame(args[3], params.get(1));
+		assertSame(args[7], params.get(4));
+	}
+
+	@Test
+	public void resultMutable() {
+		OptionParser parser = new OptionParser(ListRun.class);
+		Map<Object, String[]> result = parser.parse("a b".split(" "));
+		ListRun command = parser.get(ListRun.class);
+
+		String[] params = { "x" };
+		assertArrayEquals(new String[] { "a", "b" }, result.put(command, params));
+		assertSame(params, result.get(command));
+		for (Map.Entry<Object, String[]> entry : result.entrySet()) {
+			entry.setValue(new String[0]);
+		}
+		assertEquals(0, result.get(command).length);
+		result.put("other", null);
+		assertEquals(2, result.size());
+		assertNull(result.remove("other"));
+		result.keySet().remove(command);
+		assertTrue(result.isEmpty());
+	}
+
+	@Test
+	public void manyParams() {
+		String[] args = new String[100000];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = i % 3 == 0 ? "\\" + i : String.valueOf(i); // mixed ranges and chunks
+		}
+
+		OptionParser parser = new OptionParser(ListRun.class);
+		Map<Object, String[]> result = parser.parse(args);
+
+		List<String> params = parser.get(ListRun.class).params;
+		assertEquals(args.length, params.size());
+		List<String> iterated = new ArrayList<>(params);
+		for (int i = 0; i < args.length; i++) {
+			assertEquals(String.valueOf(i), params.get(i));
+			assertEquals(String.valueOf(i), iterated.get(i));
+		}
+		assertArrayEquals(params.toArray(), result.get(parser.get(ListRun.class)));
+	}
+
+	@Test
+	public void streamed() {
+		OptionParser parser = new OptionParser(StreamRun.class, IterableRun.class);
+		parser.parse("a b iter c d".split("\\s+"), true);
+		assertEquals("a,b", parser.get(StreamRun.class).joined);
+		assertEquals("c,d", parser.get(IterableRun.class).joined);
+	}
+
+	@Command(name = "list")
+	static class ListRun {
+		@Option(description = "", opt = { "-i" })
+		int i;
+
+		List<String> params;
+
+		void run(List<String> params) {
+			this.params = params;
+		}
+	}
+
+	@Command(name = "stream")
+	static class StreamRun {
+		String joined;
+
+		void run(OptionParser parser, Stream<String> params) {
+			joined = params.collect(Collectors.joining(","));
+		}
+	}
+
+	@Command(name = "iter")
+	static class IterableRun {
+		String joined;
+
+		void run(Iterable<String> params) {
+			joined = String.join(",", params);
+		}
+	}
+}
@@ -7,6 +7,7 @@ import thirdpty.test.PrivateConstructor;
 import thirdpty.test.RunnableCommand;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class NegativeCasesTest {
 	private OptionParser parser;
@@ -35,12 +36,34 @@ public class NegativeCasesTest {
 		parser.parse("-i str".split("\\s+"));
 	}
 
+	@Test(expected = OptParseException.class)
+	public void optArgOutOfRange() {
+		parser = new OptionParser(PrivateConstructor.class);
+		parser.parse("-i 0x80000000".split("\\s+"));
+	}
+
+	@Test(expected = OptParseException.class)
+	public void misplacedSign() {
+		parser = new OptionParser(PrivateConstructor.class);
+		parser.parse("-i 0x-1".split("\\s+"));
+	}
+
 	@Test(expected = OptParseException.class)
 	public void badOptType() {
 		parser = new OptionParser(UnsupportedType.class);
 		parser.parse("-c str".split("\\s+"));
 	}
 
+	@Test
+	public void unsupportedTypeOnRegistration() {
+		try {
+			new OptionParser(UnsupportedType.class);
+			fail();
+		} catch (OptParseException e) {
+			assertEquals("Unsupported type 'java.util.Calendar' for 'java.util.Calendar thirdpty.test.negative.UnsupportedType.cal'", e.getMessage());
+		}
+	}
+
 	@Test(expected = OptParseException.class)
 	public void duplicateOptKey() {
 		parser = new OptionParser(DuplicateOptionKeys.class);